@@ -0,0 +1,89 @@
+package de.yoyosource.streamable.benchmark;
+
+import de.yoyosource.streamable.Streamable;
+import de.yoyosource.streamable.impl.AdvancedStream;
+import de.yoyosource.streamable.impl.JavaStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdvancedStreamBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"16"})
+    private int windowSize;
+
+    private Integer[] values;
+
+    @Setup
+    public void setup() {
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+    }
+
+    @Benchmark
+    public long windowFixedStreamable() {
+        return Streamable.of(values)
+                .as(AdvancedStream.type())
+                .windowFixed(windowSize, true)
+                .as(JavaStream.type())
+                .count();
+    }
+
+    @Benchmark
+    public long windowFixedStream() {
+        List<Integer> list = Arrays.asList(values);
+        return IntStream.range(0, (list.size() + windowSize - 1) / windowSize)
+                .mapToObj(index -> new ArrayList<>(list.subList(index * windowSize, Math.min(list.size(), (index + 1) * windowSize))))
+                .count();
+    }
+
+    @Benchmark
+    public long windowSlidingStreamable() {
+        return Streamable.of(values)
+                .as(AdvancedStream.type())
+                .windowSliding(windowSize)
+                .as(JavaStream.type())
+                .count();
+    }
+
+    @Benchmark
+    public long windowSlidingStream() {
+        List<Integer> list = Arrays.asList(values);
+        return IntStream.rangeClosed(0, list.size() - windowSize)
+                .mapToObj(index -> new ArrayList<>(list.subList(index, index + windowSize)))
+                .count();
+    }
+
+    @Benchmark
+    public List<Integer> scanStreamable() {
+        return Streamable.of(values)
+                .as(AdvancedStream.type())
+                .scan(Integer::sum)
+                .as(JavaStream.type())
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> scanStream() {
+        int[] sum = {0};
+        return Arrays.stream(values)
+                .map(integer -> sum[0] += integer)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,279 @@
+package de.yoyosource.streamable.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compares two JMH result files written with {@code -rf json} and reports every benchmark whose
+ * score or normalized allocation rate got worse by more than the threshold.
+ * <p>
+ * Usage: {@code CompareResults <baseline.json> <current.json> [threshold]}, where the threshold is
+ * a fraction and defaults to 0.10. Exits with status 1 if a regression was found and with status 2
+ * if a result has no allocation rate, as the benchmarks were not run with {@code -prof gc}.
+ */
+public class CompareResults {
+
+    // JMH 1.36 and later name the metric without the middle dot older versions put in front of it
+    private static final List<String> ALLOCATION = List.of("gc.alloc.rate.norm", "\u00B7gc.alloc.rate.norm");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[0].isEmpty()) {
+            System.err.println("Usage: CompareResults <baseline.json> <current.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        Map<String, Map<String, Object>> baseline = read(Path.of(args[0]));
+        Map<String, Map<String, Object>> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        int missingAllocations = 0;
+        for (Map.Entry<String, Map<String, Object>> entry : current.entrySet()) {
+            Map<String, Object> before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW        %s%n", entry.getKey());
+                continue;
+            }
+            Map<String, Object> after = entry.getValue();
+
+            // Throughput like modes report operations per time unit, where higher is better
+            String mode = (String) after.get("mode");
+            boolean higherIsBetter = "thrpt".equals(mode);
+            double scoreBefore = score(before, null);
+            double scoreAfter = score(after, null);
+            double change = relativeChange(scoreBefore, scoreAfter, higherIsBetter);
+
+            double allocationBefore = score(before, ALLOCATION);
+            double allocationAfter = score(after, ALLOCATION);
+            double allocationChange = relativeChange(allocationBefore, allocationAfter, false);
+            if (Double.isNaN(allocationBefore) || Double.isNaN(allocationAfter)) {
+                System.err.printf("No %s in the %s result of %s%n", ALLOCATION.get(0), Double.isNaN(allocationBefore) ? "baseline" : "current", entry.getKey());
+                missingAllocations++;
+            }
+
+            boolean regression = change > threshold || allocationChange > threshold;
+            if (regression) regressions++;
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%), alloc %.1f -> %.1f B/op (%+.1f%%)%n",
+                    regression ? "REGRESSION" : "ok", entry.getKey(),
+                    scoreBefore, scoreAfter, unit(after), change * 100,
+                    allocationBefore, allocationAfter, allocationChange * 100);
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("MISSING    %s%n", name);
+            }
+        }
+
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regressions above " + threshold * 100 + "%");
+        if (missingAllocations != 0) {
+            System.err.println(missingAllocations + " results have no allocation rate, run the benchmarks with -prof gc");
+            System.exit(2);
+        }
+        if (regressions != 0) System.exit(1);
+    }
+
+    /**
+     * @return how much worse the score got relative to the baseline, negative for improvements
+     */
+    private static double relativeChange(double before, double after, boolean higherIsBetter) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) return 0;
+        double change = (after - before) / before;
+        return higherIsBetter ? -change : change;
+    }
+
+    private static Map<String, Map<String, Object>> read(Path path) throws IOException {
+        Map<String, Map<String, Object>> results = new TreeMap<>();
+        for (Object result : (List<Object>) new JsonParser(Files.readString(path)).parse()) {
+            Map<String, Object> benchmark = (Map<String, Object>) result;
+            StringBuilder name = new StringBuilder((String) benchmark.get("benchmark"));
+            Map<String, Object> params = (Map<String, Object>) benchmark.get("params");
+            if (params != null) {
+                name.append(new TreeMap<>(params));
+            }
+            results.put(name.toString(), benchmark);
+        }
+        return results;
+    }
+
+    /**
+     * @param secondary the names the secondary metric may have or null for the primary metric
+     */
+    private static double score(Map<String, Object> benchmark, List<String> secondary) {
+        Map<String, Object> metric = null;
+        if (secondary == null) {
+            metric = (Map<String, Object>) benchmark.get("primaryMetric");
+        } else {
+            Map<String, Object> secondaries = (Map<String, Object>) benchmark.get("secondaryMetrics");
+            for (int i = 0; secondaries != null && metric == null && i < secondary.size(); i++) {
+                metric = (Map<String, Object>) secondaries.get(secondary.get(i));
+            }
+        }
+        if (metric == null || !(metric.get("score") instanceof Double)) return Double.NaN;
+        return (Double) metric.get("score");
+    }
+
+    private static String unit(Map<String, Object> benchmark) {
+        return (String) ((Map<String, Object>) benchmark.get("primaryMetric")).get("scoreUnit");
+    }
+
+    /**
+     * Just enough JSON to read JMH results: objects, arrays, strings, numbers, booleans and null.
+     * Numbers are read as {@link Double}, JMH writes {@code "NaN"} as a string.
+     */
+    private static final class JsonParser {
+        private final String input;
+        private int index;
+
+        private JsonParser(String input) {
+            this.input = input;
+        }
+
+        private Object parse() {
+            Object value = value();
+            skipWhitespace();
+            if (index != input.length()) throw error("Unexpected trailing content");
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (index >= input.length()) throw error("Unexpected end of input");
+            char c = input.charAt(index);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            index++;
+            skipWhitespace();
+            if (peek() == '}') {
+                index++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                object.put(key, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    index++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            index++;
+            skipWhitespace();
+            if (peek() == ']') {
+                index++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    index++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                if (index >= input.length()) throw error("Unterminated string");
+                char c = input.charAt(index++);
+                if (c == '"') return builder.toString();
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                char escaped = input.charAt(index++);
+                switch (escaped) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        builder.append((char) Integer.parseInt(input.substring(index, index + 4), 16));
+                        index += 4;
+                        break;
+                    default:
+                        builder.append(escaped);
+                }
+            }
+        }
+
+        private Double number() {
+            int start = index;
+            while (index < input.length() && "+-0123456789.eE".indexOf(input.charAt(index)) >= 0) {
+                index++;
+            }
+            if (start == index) throw error("Unexpected character '" + input.charAt(index) + "'");
+            return Double.parseDouble(input.substring(start, index));
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!input.startsWith(literal, index)) throw error("Expected " + literal);
+            index += literal.length();
+            return value;
+        }
+
+        private char peek() {
+            if (index >= input.length()) throw error("Unexpected end of input");
+            return input.charAt(index);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("Expected '" + c + "'");
+            index++;
+        }
+
+        private void skipWhitespace() {
+            while (index < input.length() && Character.isWhitespace(input.charAt(index))) {
+                index++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + index);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.yoyosource.streamable.benchmark;
+
+import de.yoyosource.streamable.Streamable;
+import de.yoyosource.streamable.impl.JavaStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlatMapBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    @Param({"10", "1000"})
+    private int fanOut;
+
+    private Integer[] values;
+
+    @Setup
+    public void setup() {
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+    }
+
+    @Benchmark
+    public long explodeCountStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .flatMap(integer -> Collections.nCopies(fanOut, integer))
+                .count();
+    }
+
+    @Benchmark
+    public long explodeCountStream() {
+        return Arrays.stream(values)
+                .flatMap(integer -> Collections.nCopies(fanOut, integer).stream())
+                .count();
+    }
+
+    @Benchmark
+    public long explodeInfiniteLimitStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .flatMap(integer -> Streamable.generate(() -> integer))
+                .limit(size)
+                .count();
+    }
+
+    @Benchmark
+    public long explodeInfiniteLimitStream() {
+        return Arrays.stream(values)
+                .flatMap(integer -> Stream.generate(() -> integer))
+                .limit(size)
+                .count();
+    }
+
+    @Benchmark
+    public long mapMultiStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .<Integer>mapMulti((integer, consumer) -> {
+                    for (int i = 0; i < fanOut; i++) {
+                        consumer.accept(integer);
+                    }
+                })
+                .count();
+    }
+
+    @Benchmark
+    public long mapMultiStream() {
+        return Arrays.stream(values)
+                .<Integer>mapMulti((integer, consumer) -> {
+                    for (int i = 0; i < fanOut; i++) {
+                        consumer.accept(integer);
+                    }
+                })
+                .count();
+    }
+}
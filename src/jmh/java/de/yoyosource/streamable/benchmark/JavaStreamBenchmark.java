@@ -0,0 +1,147 @@
+package de.yoyosource.streamable.benchmark;
+
+import de.yoyosource.streamable.Streamable;
+import de.yoyosource.streamable.impl.JavaStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JavaStreamBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private Integer[] values;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(1000);
+        }
+    }
+
+    @Benchmark
+    public long filterMapCountStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .filter(integer -> integer % 2 == 0)
+                .map(integer -> integer * 3)
+                .count();
+    }
+
+    @Benchmark
+    public long filterMapCountStream() {
+        return Arrays.stream(values)
+                .filter(integer -> integer % 2 == 0)
+                .map(integer -> integer * 3)
+                .count();
+    }
+
+    @Benchmark
+    public List<Integer> mapToListStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .map(integer -> integer + 1)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> mapToListStream() {
+        return Arrays.stream(values)
+                .map(integer -> integer + 1)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> distinctSortedStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .distinct()
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> distinctSortedStream() {
+        return Arrays.stream(values)
+                .distinct()
+                .sorted(Comparator.naturalOrder())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> sortedLimitStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder())
+                .limit(10)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> sortedLimitStream() {
+        return Arrays.stream(values)
+                .sorted(Comparator.naturalOrder())
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> lastPageStreamable() {
+        return Streamable.from(Arrays.asList(values))
+                .as(JavaStream.type())
+                .skip(size - 10)
+                .limit(10)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> lastPageStream() {
+        return Arrays.asList(values).stream()
+                .skip(size - 10)
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Optional<Integer> reduceStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .reduce(Integer::sum);
+    }
+
+    @Benchmark
+    public Optional<Integer> reduceStream() {
+        return Arrays.stream(values)
+                .reduce(Integer::sum);
+    }
+
+    @Benchmark
+    public Optional<Integer> filterFindFirstStreamable() {
+        return Streamable.of(values)
+                .as(JavaStream.type())
+                .filter(integer -> integer > 990)
+                .findFirst();
+    }
+
+    @Benchmark
+    public Optional<Integer> filterFindFirstStream() {
+        return Arrays.stream(values)
+                .filter(integer -> integer > 990)
+                .findFirst();
+    }
+}
@@ -0,0 +1,124 @@
+package de.yoyosource.streamable.benchmark;
+
+import de.yoyosource.streamable.LongStreamable;
+import de.yoyosource.streamable.Streamable;
+import de.yoyosource.streamable.impl.NumberStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumberStreamBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private Long[] longs;
+    private long[] primitiveLongs;
+    private Double[] doubles;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        longs = new Long[size];
+        primitiveLongs = new long[size];
+        doubles = new Double[size];
+        for (int i = 0; i < size; i++) {
+            primitiveLongs[i] = random.nextInt(1_000_000);
+            longs[i] = primitiveLongs[i];
+            doubles[i] = random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public Optional<Long> sumLongStreamable() {
+        return Streamable.of(longs)
+                .as(NumberStream.type())
+                .sum();
+    }
+
+    @Benchmark
+    public long sumLongPrimitiveStreamable() {
+        return LongStreamable.of(primitiveLongs)
+                .sum();
+    }
+
+    @Benchmark
+    public long sumLongStream() {
+        return Arrays.stream(longs)
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Benchmark
+    public Optional<Double> sumDoubleStreamable() {
+        return Streamable.of(doubles)
+                .as(NumberStream.type())
+                .sum();
+    }
+
+    @Benchmark
+    public Optional<Double> sumCompensatedDoubleStreamable() {
+        return Streamable.of(doubles)
+                .as(NumberStream.type())
+                .sumCompensated();
+    }
+
+    @Benchmark
+    public double sumDoubleStream() {
+        return Arrays.stream(doubles)
+                .mapToDouble(Double::doubleValue)
+                .sum();
+    }
+
+    @Benchmark
+    public Optional<Long> maxLongStreamable() {
+        return Streamable.of(longs)
+                .as(NumberStream.type())
+                .max();
+    }
+
+    @Benchmark
+    public Optional<Long> maxLongStream() {
+        return Arrays.stream(longs)
+                .max(Long::compare);
+    }
+
+    @Benchmark
+    public Optional<Double> averageDoubleStreamable() {
+        return Streamable.of(doubles)
+                .as(NumberStream.type())
+                .average();
+    }
+
+    @Benchmark
+    public OptionalDouble averageDoubleStream() {
+        return Arrays.stream(doubles)
+                .mapToDouble(Double::doubleValue)
+                .average();
+    }
+
+    @Benchmark
+    public NumberStream.SummaryStatistics<Long> summaryStatisticsLongStreamable() {
+        return Streamable.of(longs)
+                .as(NumberStream.type())
+                .summaryStatistics();
+    }
+
+    @Benchmark
+    public LongSummaryStatistics summaryStatisticsLongStream() {
+        return Arrays.stream(longs)
+                .mapToLong(Long::longValue)
+                .summaryStatistics();
+    }
+}
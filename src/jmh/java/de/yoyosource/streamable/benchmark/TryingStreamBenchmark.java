@@ -0,0 +1,63 @@
+package de.yoyosource.streamable.benchmark;
+
+import de.yoyosource.streamable.Streamable;
+import de.yoyosource.streamable.impl.JavaStream;
+import de.yoyosource.streamable.impl.TryedStream;
+import de.yoyosource.streamable.impl.TryingStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TryingStreamBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    // Percentage of the inputs that fail to parse
+    @Param({"0", "10"})
+    private int failures;
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i % 100 < failures ? "x" + i : Integer.toString(i);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> tryItStreamable() {
+        return Streamable.of(values)
+                .as(TryingStream.type())
+                .tryIt(Integer::parseInt)
+                .keepAndUnwrap(TryedStream.successful())
+                .as(JavaStream.type())
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> tryItStream() {
+        return Arrays.stream(values)
+                .map(value -> {
+                    try {
+                        return Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,22 +1,51 @@
 package de.yoyosource;
 
+import de.yoyosource.streamable.DoubleStreamable;
+import de.yoyosource.streamable.IntStreamable;
+import de.yoyosource.streamable.LongStreamable;
 import de.yoyosource.streamable.Streamable;
 import de.yoyosource.streamable.StreamableCollector;
 import de.yoyosource.streamable.StreamableGatherer;
 import de.yoyosource.streamable.impl.*;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class Test {
 
     public static void main(String[] args) {
+        // Performance is measured by the JMH benchmarks in src/jmh, run them with './gradlew jmh'
         // testSimpleForEach();
         // testGroupBy();
         // testIteratorAfterFlatMap();
@@ -33,10 +62,24 @@ public class Test {
         // testStreamConcat();
         // testComparableStream();
         // testOptionalStream();
-        // testFactorialUsingStreamable(); // 358018
-        // testFactorialUsingStreamSequential(); // 352671
-        // testFactorialUsingStreamParallel(); // 15795
-        testTrySplit();
+        // testFactorialUsingStreamable();
+        // testFactorialUsingStreamableParallel();
+        testParallelCollectorAfterBarrier();
+        testParallelInfiniteSource();
+        // testFactorialUsingRange();
+        // testFactorialUsingReduceBalanced();
+        // testFactorialUsingStreamSequential();
+        // testFactorialUsingStreamParallel();
+        testAllocationPerElement();
+        // testToStream();
+        // testLongStreamable();
+        testPrimitiveLimitZero();
+        testFlightRecorderEvents();
+        // testExplainAndProfile();
+        testSpillFilesAreDeleted();
+        testSortManyRuns();
+        testSpillingGroupByRepartitions();
+        // testTrySplit();
 
         if (true) return;
 
@@ -235,11 +278,6 @@ public class Test {
                         @Override
                         public boolean apply(Integer input) {
                             count++;
-                            // 10_000 -> 86022
-                            // 10_000 -> 77141
-                            // 10_000 -> 94862
-                            // 10_000 -> 182324
-                            // 30_000 -> 316893
                             return System.currentTimeMillis() - time > 10_000;
                         }
 
@@ -314,6 +352,98 @@ public class Test {
         System.out.println(result + " " + time);
     }
 
+    public static void testFactorialUsingStreamableParallel() {
+        long time = System.currentTimeMillis();
+        Optional<BigInteger> result = Streamable.iterate(BigInteger.ONE, l -> l.add(BigInteger.ONE))
+                .parallel()
+                .as(JavaStream.type())
+                .limit(1_000_000)
+                .reduce(BigInteger::multiply);
+        time = System.currentTimeMillis() - time;
+        System.out.println(result + " " + time);
+    }
+
+    public static void testParallelCollectorAfterBarrier() {
+        // A pool of its own, so that the collector can be split on machines with a single core as well
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Optional<BigInteger> result;
+        try {
+            result = pool.submit(() -> Streamable.iterate(BigInteger.ONE, l -> l.add(BigInteger.ONE))
+                    .parallel()
+                    .as(JavaStream.type())
+                    .limit(20_000)
+                    .reduce((left, right) -> {
+                        threads.add(Thread.currentThread());
+                        return left.multiply(right);
+                    })).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 2; i <= 20_000; i++) {
+            expected = expected.multiply(BigInteger.valueOf(i));
+        }
+        if (!result.equals(Optional.of(expected))) {
+            throw new IllegalStateException("The parallel reduction computed a wrong result");
+        }
+        if (threads.size() < 2) {
+            throw new IllegalStateException("The collector after limit ran on " + threads.size() + " thread");
+        }
+        System.out.println("Reduced on " + threads.size() + " threads");
+    }
+
+    public static void testParallelInfiniteSource() {
+        boolean anyMatch = Streamable.iterate(0, integer -> integer + 1)
+                .parallel()
+                .as(JavaStream.type())
+                .anyMatch(integer -> integer > 1000);
+        if (!anyMatch) {
+            throw new IllegalStateException("anyMatch did not find an element");
+        }
+
+        Optional<Integer> first = Streamable.iterate(0, integer -> integer + 1)
+                .parallel()
+                .as(JavaStream.type())
+                .filter(integer -> integer > 1000)
+                .findFirst();
+        if (!first.equals(Optional.of(1001))) {
+            throw new IllegalStateException("findFirst found " + first);
+        }
+
+        List<Integer> limited = Streamable.iterate(0, integer -> integer + 1)
+                .parallel()
+                .as(JavaStream.type())
+                .map(integer -> integer * 2)
+                .limit(10)
+                .toList();
+        if (!limited.equals(List.of(0, 2, 4, 6, 8, 10, 12, 14, 16, 18))) {
+            throw new IllegalStateException("limit returned " + limited);
+        }
+    }
+
+    public static void testFactorialUsingRange() {
+        long time = System.currentTimeMillis();
+        Optional<BigInteger> result = Streamable.rangeClosed(BigInteger.ONE, BigInteger.valueOf(1_000_000), BigInteger.ONE)
+                .parallel()
+                .as(JavaStream.type())
+                .reduce(BigInteger::multiply);
+        time = System.currentTimeMillis() - time;
+        System.out.println(result + " " + time);
+    }
+
+    public static void testFactorialUsingReduceBalanced() {
+        long time = System.currentTimeMillis();
+        Optional<BigInteger> result = Streamable.rangeClosed(BigInteger.ONE, BigInteger.valueOf(1_000_000), BigInteger.ONE)
+                .as(JavaStream.type())
+                .reduceBalanced(BigInteger::multiply);
+        time = System.currentTimeMillis() - time;
+        System.out.println(result + " " + time);
+    }
+
     public static void testFactorialUsingStreamSequential() {
         long time = System.currentTimeMillis();
         Optional<BigInteger> result = Stream.iterate(BigInteger.ONE, l -> l.add(BigInteger.ONE))
@@ -333,8 +463,34 @@ public class Test {
         System.out.println(result + " " + time);
     }
 
+    public static void testAllocationPerElement() {
+        // Run with -Dstreamable.compile=false to measure the interpreter
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Integer[] values = new Integer[1_000_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i & 0x7F;
+        }
+
+        // The first runs also allocate for class loading and compilation, so only the cheapest run is checked
+        double minBytesPerElement = Double.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            long allocated = threadMXBean.getCurrentThreadAllocatedBytes();
+            long count = Streamable.of(values)
+                    .as(JavaStream.type())
+                    .map(integer -> integer & 0x3F)
+                    .filter(integer -> integer % 2 == 0)
+                    .limit(Long.MAX_VALUE)
+                    .count();
+            allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocated;
+            System.out.println(count + " " + allocated + " bytes, " + (double) allocated / values.length + " bytes per element");
+            minBytesPerElement = Math.min(minBytesPerElement, (double) allocated / values.length);
+        }
+        if (minBytesPerElement > 0.01) {
+            throw new IllegalStateException("The pipeline allocated " + minBytesPerElement + " bytes per element");
+        }
+    }
+
     public static void testTrySplit() {
-        /*
         long time = System.currentTimeMillis();
 
         Spliterator<BigInteger> spliterator = Streamable.iterate(BigInteger.ONE, l -> l.add(BigInteger.ONE))
@@ -342,31 +498,31 @@ public class Test {
                 .limit(1_000_000)
                 .spliterator();
 
-        List<StreamableManager.Pair<Spliterator<BigInteger>, Integer>> splits = new ArrayList<>();
+        List<Map.Entry<Spliterator<BigInteger>, Integer>> splits = new ArrayList<>();
         while (true) {
             Spliterator<BigInteger> other = spliterator.trySplit();
             if (other == null) break;
-            splits.add(new StreamableManager.Pair<>(other, splits.size()));
+            splits.add(Map.entry(other, splits.size()));
             if (splits.size() > Runtime.getRuntime().availableProcessors() * 10) {
-                splits.add(new StreamableManager.Pair<>(spliterator, splits.size()));
+                splits.add(Map.entry(spliterator, splits.size()));
                 break;
             }
         }
 
-        Map<Integer, BigInteger> results = new HashMap<>();
+        Map<Integer, BigInteger> results = new ConcurrentHashMap<>();
         ExecutorService executorService = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
-        for (StreamableManager.Pair<Spliterator<BigInteger>, Integer> other : splits) {
+        for (Map.Entry<Spliterator<BigInteger>, Integer> other : splits) {
             executorService.execute(() -> {
                 AtomicReference<BigInteger> reference = new AtomicReference<>();
-                other.first.forEachRemaining(bigInteger -> {
+                other.getKey().forEachRemaining(bigInteger -> {
                     if (reference.get() == null) {
                         reference.set(bigInteger);
                     } else {
                         reference.set(reference.get().multiply(bigInteger));
                     }
                 });
-                // System.out.println("Finished: " + other.first + " " + reference.get().bitLength());
-                results.put(other.second, reference.get());
+                // System.out.println("Finished: " + other.getKey() + " " + reference.get().bitLength());
+                results.put(other.getValue(), reference.get());
             });
         }
 
@@ -389,6 +545,275 @@ public class Test {
 
         time = System.currentTimeMillis() - time;
         System.out.println("Finished: " + reference.get().bitLength() + " " + time);
-         */
+    }
+
+    public static void testToStream() {
+        Streamable.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+                .as(JavaStream.type())
+                .map(integer -> integer * 2)
+                .toStream()
+                .parallel()
+                .forEach(System.out::println);
+    }
+
+    public static void testLongStreamable() {
+        long sum = LongStreamable.rangeClosed(1, 100_000_000)
+                .filter(value -> value % 3 == 0)
+                .map(value -> value * 2)
+                .sum();
+        System.out.println(sum);
+
+        long length = Streamable.of("a", "bb", "ccc")
+                .as(JavaStream.type())
+                .mapToLong(String::length)
+                .sum();
+        System.out.println(length);
+    }
+
+    public static void testPrimitiveLimitZero() {
+        if (IntStreamable.of(1, 2, 3, 4).limit(0).toArray().length != 0) {
+            throw new IllegalStateException("IntStreamable.limit(0) passed on elements");
+        }
+        if (LongStreamable.of(1, 2, 3, 4).limit(0).toArray().length != 0) {
+            throw new IllegalStateException("LongStreamable.limit(0) passed on elements");
+        }
+        if (DoubleStreamable.of(1, 2, 3, 4).limit(0).toArray().length != 0) {
+            throw new IllegalStateException("DoubleStreamable.limit(0) passed on elements");
+        }
+        if (LongStreamable.of(1, 2, 3, 4).limit(2).toArray().length != 2) {
+            throw new IllegalStateException("LongStreamable.limit(2) did not pass on 2 elements");
+        }
+        try {
+            LongStreamable.of(1, 2, 3, 4).limit(-1);
+            throw new IllegalStateException("LongStreamable.limit(-1) was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static void testFlightRecorderEvents() {
+        Path file;
+        try (Recording recording = new Recording()) {
+            recording.enable("de.yoyosource.streamable.Evaluation");
+            recording.enable("de.yoyosource.streamable.Stage");
+            recording.enable("de.yoyosource.streamable.ElementSample");
+            recording.start();
+
+            Streamable.iterate(0, integer -> integer + 1)
+                    .as(JavaStream.type())
+                    .filter(integer -> integer % 2 == 0)
+                    .limit(10_000)
+                    .sorted(Comparator.naturalOrder())
+                    .count();
+            Streamable.of(values(10_000))
+                    .parallel()
+                    .as(JavaStream.type())
+                    .map(integer -> integer * 2)
+                    .toList();
+
+            recording.stop();
+            file = Files.createTempFile("streamable", ".jfr");
+            recording.dump(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        try {
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                counts.merge(event.getEventType().getName(), 1, Integer::sum);
+                if (event.getEventType().getName().equals("de.yoyosource.streamable.Evaluation")) {
+                    System.out.println(event.getString("pipeline") + " " + event.getLong("elementsIn") + " -> " + event.getLong("elementsOut") + " in " + event.getDuration());
+                }
+            }
+            Files.delete(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (String name : List.of("de.yoyosource.streamable.Evaluation", "de.yoyosource.streamable.Stage", "de.yoyosource.streamable.ElementSample")) {
+            if (!counts.containsKey(name)) {
+                throw new IllegalStateException("No " + name + " event was recorded");
+            }
+        }
+        // A parallel evaluation records one event for all its parts
+        if (counts.get("de.yoyosource.streamable.Evaluation") != 2) {
+            throw new IllegalStateException(counts.get("de.yoyosource.streamable.Evaluation") + " evaluation events were recorded for 2 evaluations");
+        }
+        System.out.println(counts);
+    }
+
+    private static Integer[] values(int size) {
+        Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    public static void testExplainAndProfile() {
+        JavaStream<String> pipeline = Streamable.iterate(0, integer -> integer + 1)
+                .as(JavaStream.type())
+                .filter(integer -> integer % 3 == 0)
+                .flatMap(integer -> List.of(integer, -integer))
+                .limit(100_000)
+                .map(String::valueOf);
+        System.out.println(pipeline.explain());
+        System.out.println(pipeline.profile());
+    }
+
+    public static void testSortManyRuns() {
+        List<Integer> values = new ArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 200_000; i++) {
+            values.add(random.nextInt(1_000));
+        }
+        List<Integer> expected = new ArrayList<>(values);
+        expected.sort(Comparator.naturalOrder());
+
+        // 5000 runs, far more than can be open at once
+        List<Integer> sorted = Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 40, ElementCodec.integers())
+                .toList();
+        if (!sorted.equals(expected)) {
+            throw new IllegalStateException("The merged runs are not sorted");
+        }
+    }
+
+    public static void testSpillingGroupByRepartitions() {
+        List<Integer> values = new ArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            // One key holds a fifth of all elements, more than fit into memory
+            values.add(i % 5 == 0 ? -1 : random.nextInt(10_000));
+        }
+        Map<Integer, List<Integer>> expected = new HashMap<>();
+        for (Integer value : values) {
+            expected.computeIfAbsent(value, k -> new ArrayList<>()).add(value);
+        }
+
+        // Every first level partition holds about 1250 elements, so most are partitioned again
+        Map<Integer, List<Integer>> grouped = new HashMap<>();
+        Streamable.from(values)
+                .as(AdvancedStream.type())
+                .groupBy(Function.identity(), 500, ElementCodec.integers())
+                .forEach(entry -> {
+                    if (grouped.put(entry.getKey(), entry.getValue()) != null) {
+                        throw new IllegalStateException("Key " + entry.getKey() + " was emitted twice");
+                    }
+                });
+        if (!grouped.equals(expected)) {
+            throw new IllegalStateException("The partitioned groups differ from the groups in memory");
+        }
+
+        Map<Integer, Long> counted = new HashMap<>();
+        Streamable.from(values)
+                .as(AdvancedStream.type())
+                .countsBy(Function.identity(), 50, ElementCodec.integers())
+                .forEach(entry -> counted.put(entry.getKey(), entry.getValue()));
+        for (Map.Entry<Integer, List<Integer>> entry : expected.entrySet()) {
+            if (counted.get(entry.getKey()) != entry.getValue().size()) {
+                throw new IllegalStateException("Key " + entry.getKey() + " was counted " + counted.get(entry.getKey()) + " times instead of " + entry.getValue().size());
+            }
+        }
+    }
+
+    public static void testSpillFilesAreDeleted() {
+        Path directory = Path.of(System.getProperty("streamable.spill.directory", System.getProperty("java.io.tmpdir")));
+        long before = spillFiles(directory);
+        List<Integer> values = new ArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 1_000; i++) {
+            values.add(random.nextInt());
+        }
+
+        expectFailure(() -> Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, failingCodec())
+                .toList());
+        expectFailure(() -> Streamable.from(values)
+                .as(AdvancedStream.type())
+                .groupBy(integer -> integer % 10, 100, failingCodec())
+                .as(JavaStream.type())
+                .toList());
+        expectFailure(() -> Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, ElementCodec.integers())
+                .map(integer -> {
+                    if (integer > 0) throw new IllegalStateException("Downstream failure");
+                    return integer;
+                })
+                .toList());
+        expectFailure(() -> Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, ElementCodec.integers())
+                .iterator()
+                .forEachRemaining(integer -> {
+                    if (integer > 0) throw new IllegalStateException("Downstream failure");
+                }));
+
+        Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, ElementCodec.integers())
+                .limit(1)
+                .toList();
+        Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, ElementCodec.integers())
+                .limit(1)
+                .iterator()
+                .next();
+        // A limit larger than the memory budget is not fused into a bounded heap, so the runs are merged lazily
+        Iterator<Integer> iterator = Streamable.from(values)
+                .as(JavaStream.type())
+                .sorted(Comparator.naturalOrder(), 100, ElementCodec.integers())
+                .limit(500)
+                .iterator();
+        for (int i = 0; i < 500; i++) {
+            iterator.next();
+        }
+
+        long left = spillFiles(directory) - before;
+        if (left != 0) {
+            throw new IllegalStateException(left + " spill files were not deleted from " + directory);
+        }
+    }
+
+    private static ElementCodec<Integer> failingCodec() {
+        return new ElementCodec<>() {
+            private int writes;
+
+            @Override
+            public void write(Integer element, DataOutput output) throws IOException {
+                if (++writes == 250) throw new IOException("Disk full");
+                output.writeInt(element);
+            }
+
+            @Override
+            public Integer read(DataInput input) throws IOException {
+                return input.readInt();
+            }
+        };
+    }
+
+    private static void expectFailure(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            return;
+        }
+        throw new IllegalStateException("The evaluation did not fail");
+    }
+
+    private static long spillFiles(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith("streamable") && name.endsWith(".spill");
+            }).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
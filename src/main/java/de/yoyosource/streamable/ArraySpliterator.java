@@ -0,0 +1,49 @@
+package de.yoyosource.streamable;
+
+/**
+ * A {@link java.util.Spliterator} over an array like {@link java.util.Arrays#spliterator(Object[])},
+ * which additionally copies whole ranges into the chunks of a batched evaluation.
+ */
+final class ArraySpliterator<T> extends IndexedSpliterator<T> {
+
+    private final Object[] array;
+
+    ArraySpliterator(Object[] array) {
+        this(array, 0, array.length, 1);
+    }
+
+    private ArraySpliterator(Object[] array, long origin, long fence, long step) {
+        super(origin, fence, step);
+        this.array = array;
+    }
+
+    @Override
+    protected long length() {
+        return array.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // The array only holds elements of type T
+    protected T get(long index) {
+        return (T) array[(int) index];
+    }
+
+    @Override
+    protected IndexedSpliterator<T> create(long index, long fence, long step) {
+        return new ArraySpliterator<>(array, index, fence, step);
+    }
+
+    @Override
+    public int fill(Object[] buffer) {
+        if (step != 1) return super.fill(buffer);
+        int length = (int) Math.min(buffer.length, estimateSize());
+        System.arraycopy(array, (int) index, buffer, 0, length);
+        index += length;
+        return length;
+    }
+
+    @Override
+    public int characteristics() {
+        return super.characteristics() | IMMUTABLE;
+    }
+}
@@ -0,0 +1,20 @@
+package de.yoyosource.streamable;
+
+import java.util.function.Consumer;
+
+/**
+ * The downstream of {@link StreamableGatherer#applyBatch(Object[], int, BatchSink)}. Elements are
+ * collected into a chunk which is passed on to the next stage once it is full or the batch is done.
+ */
+public interface BatchSink<O> extends Consumer<O> {
+
+    /**
+     * Passes on the first {@code length} elements of {@code elements}.
+     */
+    @SuppressWarnings("unchecked") // A batch only holds elements of this sink
+    default void acceptAll(Object[] elements, int length) {
+        for (int i = 0; i < length; i++) {
+            accept((O) elements[i]);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.yoyosource.streamable;
+
+/**
+ * A source that can hand out many elements at once. A {@link java.util.Spliterator} used as the
+ * source of a batched evaluation is drained through {@link #fill(Object[])} instead of one
+ * {@link java.util.Spliterator#tryAdvance(java.util.function.Consumer)} per element if it
+ * implements this interface.
+ */
+public interface BulkSource {
+
+    /**
+     * Copies the next elements into {@code buffer}, starting at index 0.
+     *
+     * @return the number of elements copied, 0 only if the source is exhausted
+     */
+    int fill(Object[] buffer);
+}
@@ -0,0 +1,13 @@
+package de.yoyosource.streamable;
+
+/**
+ * The primitive counterpart of {@link StreamableCollector} for {@link DoubleStreamable}.
+ */
+public interface DoubleCollector<R> {
+    boolean apply(double input);
+
+    R finish();
+
+    default void onClose() {
+    }
+}
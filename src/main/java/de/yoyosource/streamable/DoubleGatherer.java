@@ -0,0 +1,15 @@
+package de.yoyosource.streamable;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * The primitive counterpart of {@link StreamableGatherer} for {@link DoubleStreamable}.
+ */
+public interface DoubleGatherer {
+    boolean apply(double input, DoubleConsumer next);
+
+    void finish(DoubleConsumer next);
+
+    default void onClose() {
+    }
+}
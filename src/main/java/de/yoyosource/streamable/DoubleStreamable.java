@@ -0,0 +1,365 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.*;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Streamable of primitive double values. Gatherers and collectors receive the values unboxed,
+ * values are only boxed when they leave through {@link #boxed()} or {@link #mapToObj(DoubleFunction)}.
+ */
+public interface DoubleStreamable {
+
+    static DoubleStreamable of(double... values) {
+        return StreamableManager.fromDoubles(Arrays.spliterator(values));
+    }
+
+    static DoubleStreamable from(Spliterator.OfDouble spliterator) {
+        return StreamableManager.fromDoubles(spliterator);
+    }
+
+    DoubleStreamable gather(DoubleGatherer gatherer);
+    <R> R collect(DoubleCollector<R> collector);
+
+    PrimitiveIterator.OfDouble iterator();
+    Spliterator.OfDouble spliterator();
+
+    default Streamable<Double> boxed() {
+        return Streamable.from(spliterator());
+    }
+
+    default <R> Streamable<R> mapToObj(DoubleFunction<? extends R> mapper) {
+        return Streamable.from(StreamSupport.doubleStream(spliterator(), false).<R>mapToObj(mapper));
+    }
+
+    default IntStreamable mapToInt(DoubleToIntFunction mapper) {
+        return IntStreamable.from(StreamSupport.doubleStream(spliterator(), false).mapToInt(mapper).spliterator());
+    }
+
+    default LongStreamable mapToLong(DoubleToLongFunction mapper) {
+        return LongStreamable.from(StreamSupport.doubleStream(spliterator(), false).mapToLong(mapper).spliterator());
+    }
+
+    default DoubleStreamable filter(DoublePredicate predicate) {
+        return gather(new DoubleGatherer() {
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (predicate.test(input)) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable map(DoubleUnaryOperator mapper) {
+        return gather(new DoubleGatherer() {
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                next.accept(mapper.applyAsDouble(input));
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable peek(DoubleConsumer action) {
+        return gather(new DoubleGatherer() {
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                action.accept(input);
+                next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be a positive number");
+        }
+        return gather(new DoubleGatherer() {
+            private long elementsLeft = maxSize;
+
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (elementsLeft == 0) return true;
+                next.accept(input);
+                return --elementsLeft == 0;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable skip(long skip) {
+        if (skip < 0) {
+            throw new IllegalArgumentException("skip must be a positive number");
+        }
+        return gather(new DoubleGatherer() {
+            private long elementsLeft = skip;
+
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (elementsLeft > 0) {
+                    elementsLeft--;
+                } else {
+                    next.accept(input);
+                }
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable takeWhile(DoublePredicate predicate) {
+        return gather(new DoubleGatherer() {
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (predicate.test(input)) {
+                    next.accept(input);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable dropWhile(DoublePredicate predicate) {
+        return gather(new DoubleGatherer() {
+            private boolean take = false;
+
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (!take && !predicate.test(input)) take = true;
+                if (take) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+            }
+        });
+    }
+
+    default DoubleStreamable sorted() {
+        return gather(new DoubleGatherer() {
+            private double[] elements = new double[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(double input, DoubleConsumer next) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public void finish(DoubleConsumer next) {
+                Arrays.sort(elements, 0, size);
+                for (int i = 0; i < size; i++) {
+                    next.accept(elements[i]);
+                }
+            }
+        });
+    }
+
+    default void forEach(DoubleConsumer action) {
+        collect(new DoubleCollector<>() {
+            @Override
+            public boolean apply(double input) {
+                action.accept(input);
+                return false;
+            }
+
+            @Override
+            public Object finish() {
+                return null;
+            }
+        });
+    }
+
+    default double[] toArray() {
+        return collect(new DoubleCollector<>() {
+            private double[] elements = new double[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(double input) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public double[] finish() {
+                return Arrays.copyOf(elements, size);
+            }
+        });
+    }
+
+    default double reduce(double identity, DoubleBinaryOperator accumulator) {
+        return collect(new DoubleCollector<Double>() {
+            private double current = identity;
+
+            @Override
+            public boolean apply(double input) {
+                current = accumulator.applyAsDouble(current, input);
+                return false;
+            }
+
+            @Override
+            public Double finish() {
+                return current;
+            }
+        });
+    }
+
+    default OptionalDouble reduce(DoubleBinaryOperator accumulator) {
+        return collect(new DoubleCollector<>() {
+            private boolean present = false;
+            private double current;
+
+            @Override
+            public boolean apply(double input) {
+                if (present) {
+                    current = accumulator.applyAsDouble(current, input);
+                } else {
+                    current = input;
+                    present = true;
+                }
+                return false;
+            }
+
+            @Override
+            public OptionalDouble finish() {
+                return present ? OptionalDouble.of(current) : OptionalDouble.empty();
+            }
+        });
+    }
+
+    default double sum() {
+        return reduce(0, Double::sum);
+    }
+
+    default OptionalDouble min() {
+        return reduce(Math::min);
+    }
+
+    default OptionalDouble max() {
+        return reduce(Math::max);
+    }
+
+    default long count() {
+        return collect(new DoubleCollector<Long>() {
+            private long count = 0;
+
+            @Override
+            public boolean apply(double input) {
+                count++;
+                return false;
+            }
+
+            @Override
+            public Long finish() {
+                return count;
+            }
+        });
+    }
+
+    default OptionalDouble average() {
+        DoubleSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(statistics.getAverage());
+    }
+
+    default DoubleSummaryStatistics summaryStatistics() {
+        return collect(new DoubleCollector<>() {
+            private final DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+
+            @Override
+            public boolean apply(double input) {
+                statistics.accept(input);
+                return false;
+            }
+
+            @Override
+            public DoubleSummaryStatistics finish() {
+                return statistics;
+            }
+        });
+    }
+
+    default boolean anyMatch(DoublePredicate predicate) {
+        return collect(new DoubleCollector<Boolean>() {
+            private boolean anyMatch = false;
+
+            @Override
+            public boolean apply(double input) {
+                if (predicate.test(input)) {
+                    anyMatch = true;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public Boolean finish() {
+                return anyMatch;
+            }
+        });
+    }
+
+    default boolean allMatch(DoublePredicate predicate) {
+        return !anyMatch(predicate.negate());
+    }
+
+    default boolean noneMatch(DoublePredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    default OptionalDouble findFirst() {
+        return collect(new DoubleCollector<>() {
+            private boolean present = false;
+            private double current;
+
+            @Override
+            public boolean apply(double input) {
+                current = input;
+                present = true;
+                return true;
+            }
+
+            @Override
+            public OptionalDouble finish() {
+                return present ? OptionalDouble.of(current) : OptionalDouble.empty();
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package de.yoyosource.streamable;
+
+import java.util.Spliterator;
+
+/**
+ * A source that can jump to any position in constant time, like an array or a
+ * {@link java.util.RandomAccess} list. Leading {@link StreamableGatherer#slice(IndexedSource)}
+ * stages, like skip, limit or keep, are applied to a {@link Spliterator} implementing this
+ * interface before the evaluation, so that the skipped elements are never visited.
+ */
+public interface IndexedSource {
+
+    /**
+     * Selects the elements at the positions {@code skip}, {@code skip + step}, {@code skip + 2 * step}
+     * and so on, relative to the current position, but at most {@code limit} of them. The
+     * returned spliterator replaces this one, which must not be used afterwards.
+     *
+     * @param skip  the number of elements before the first selected element, at least 0
+     * @param limit the maximum number of selected elements, at least 0
+     * @param step  the distance between two selected elements, at least 1
+     */
+    Spliterator<?> slice(long skip, long limit, long step);
+}
@@ -0,0 +1,102 @@
+package de.yoyosource.streamable;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the elements at the positions {@code index}, {@code index + step}, ...
+ * below {@code fence} of some random access storage, which can be sliced and split without
+ * visiting any element.
+ */
+abstract class IndexedSpliterator<T> implements Spliterator<T>, BulkSource, IndexedSource {
+
+    protected long index;
+    // Exclusive end, -1 until it is bound to the size of the storage on first use
+    private long fence;
+    protected final long step;
+
+    protected IndexedSpliterator(long index, long fence, long step) {
+        this.index = index;
+        this.fence = fence;
+        this.step = step;
+    }
+
+    /**
+     * @return the number of elements in the storage, called once if the fence is not bound yet
+     */
+    protected abstract long length();
+
+    protected abstract T get(long index);
+
+    /**
+     * @return a spliterator of the same kind over the same storage
+     */
+    protected abstract IndexedSpliterator<T> create(long index, long fence, long step);
+
+    protected final long fence() {
+        if (fence < 0) fence = length();
+        return fence;
+    }
+
+    @Override
+    public int fill(Object[] buffer) {
+        long fence = fence();
+        int length = 0;
+        while (length < buffer.length && index < fence) {
+            buffer[length++] = get(index);
+            index += step;
+        }
+        return length;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (index >= fence()) return false;
+        T element = get(index);
+        index += step;
+        action.accept(element);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        long current = index;
+        long fence = fence();
+        index = fence;
+        for (; current < fence; current += step) {
+            action.accept(get(current));
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        long half = estimateSize() >>> 1;
+        if (half == 0) return null;
+        long middle = index + half * step;
+        Spliterator<T> prefix = create(index, middle, step);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public Spliterator<T> slice(long skip, long limit, long step) {
+        long remaining = estimateSize();
+        long count = skip >= remaining ? 0 : Math.min(limit, (remaining - skip - 1) / step + 1);
+        if (count == 0) return create(fence(), fence(), this.step);
+        // Two or more selected elements bound step * this.step by the remaining distance, so it cannot overflow
+        long sliceStep = count == 1 ? this.step : this.step * step;
+        long sliceIndex = index + skip * this.step;
+        return create(sliceIndex, sliceIndex + (count - 1) * sliceStep + 1, sliceStep);
+    }
+
+    @Override
+    public long estimateSize() {
+        long fence = fence();
+        return index >= fence ? 0 : (fence - index - 1) / step + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED;
+    }
+}
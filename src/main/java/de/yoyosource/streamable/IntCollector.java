@@ -0,0 +1,13 @@
+package de.yoyosource.streamable;
+
+/**
+ * The primitive counterpart of {@link StreamableCollector} for {@link IntStreamable}.
+ */
+public interface IntCollector<R> {
+    boolean apply(int input);
+
+    R finish();
+
+    default void onClose() {
+    }
+}
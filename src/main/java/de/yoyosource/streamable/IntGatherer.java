@@ -0,0 +1,15 @@
+package de.yoyosource.streamable;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The primitive counterpart of {@link StreamableGatherer} for {@link IntStreamable}.
+ */
+public interface IntGatherer {
+    boolean apply(int input, IntConsumer next);
+
+    void finish(IntConsumer next);
+
+    default void onClose() {
+    }
+}
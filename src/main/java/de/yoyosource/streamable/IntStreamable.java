@@ -0,0 +1,375 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.*;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Streamable of primitive int values. Gatherers and collectors receive the values unboxed,
+ * values are only boxed when they leave through {@link #boxed()} or {@link #mapToObj(IntFunction)}.
+ */
+public interface IntStreamable {
+
+    static IntStreamable of(int... values) {
+        return StreamableManager.fromInts(Arrays.spliterator(values));
+    }
+
+    static IntStreamable range(int startInclusive, int endExclusive) {
+        return StreamableManager.fromInts(IntStream.range(startInclusive, endExclusive).spliterator());
+    }
+
+    static IntStreamable rangeClosed(int startInclusive, int endInclusive) {
+        return StreamableManager.fromInts(IntStream.rangeClosed(startInclusive, endInclusive).spliterator());
+    }
+
+    static IntStreamable from(Spliterator.OfInt spliterator) {
+        return StreamableManager.fromInts(spliterator);
+    }
+
+    IntStreamable gather(IntGatherer gatherer);
+    <R> R collect(IntCollector<R> collector);
+
+    PrimitiveIterator.OfInt iterator();
+    Spliterator.OfInt spliterator();
+
+    default Streamable<Integer> boxed() {
+        return Streamable.from(spliterator());
+    }
+
+    default <R> Streamable<R> mapToObj(IntFunction<? extends R> mapper) {
+        return Streamable.from(StreamSupport.intStream(spliterator(), false).<R>mapToObj(mapper));
+    }
+
+    default LongStreamable mapToLong(IntToLongFunction mapper) {
+        return LongStreamable.from(StreamSupport.intStream(spliterator(), false).mapToLong(mapper).spliterator());
+    }
+
+    default DoubleStreamable mapToDouble(IntToDoubleFunction mapper) {
+        return DoubleStreamable.from(StreamSupport.intStream(spliterator(), false).mapToDouble(mapper).spliterator());
+    }
+
+    default IntStreamable filter(IntPredicate predicate) {
+        return gather(new IntGatherer() {
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (predicate.test(input)) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable map(IntUnaryOperator mapper) {
+        return gather(new IntGatherer() {
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                next.accept(mapper.applyAsInt(input));
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable peek(IntConsumer action) {
+        return gather(new IntGatherer() {
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                action.accept(input);
+                next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be a positive number");
+        }
+        return gather(new IntGatherer() {
+            private long elementsLeft = maxSize;
+
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (elementsLeft == 0) return true;
+                next.accept(input);
+                return --elementsLeft == 0;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable skip(long skip) {
+        if (skip < 0) {
+            throw new IllegalArgumentException("skip must be a positive number");
+        }
+        return gather(new IntGatherer() {
+            private long elementsLeft = skip;
+
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (elementsLeft > 0) {
+                    elementsLeft--;
+                } else {
+                    next.accept(input);
+                }
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable takeWhile(IntPredicate predicate) {
+        return gather(new IntGatherer() {
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (predicate.test(input)) {
+                    next.accept(input);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable dropWhile(IntPredicate predicate) {
+        return gather(new IntGatherer() {
+            private boolean take = false;
+
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (!take && !predicate.test(input)) take = true;
+                if (take) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+            }
+        });
+    }
+
+    default IntStreamable sorted() {
+        return gather(new IntGatherer() {
+            private int[] elements = new int[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(int input, IntConsumer next) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public void finish(IntConsumer next) {
+                Arrays.sort(elements, 0, size);
+                for (int i = 0; i < size; i++) {
+                    next.accept(elements[i]);
+                }
+            }
+        });
+    }
+
+    default void forEach(IntConsumer action) {
+        collect(new IntCollector<>() {
+            @Override
+            public boolean apply(int input) {
+                action.accept(input);
+                return false;
+            }
+
+            @Override
+            public Object finish() {
+                return null;
+            }
+        });
+    }
+
+    default int[] toArray() {
+        return collect(new IntCollector<>() {
+            private int[] elements = new int[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(int input) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public int[] finish() {
+                return Arrays.copyOf(elements, size);
+            }
+        });
+    }
+
+    default int reduce(int identity, IntBinaryOperator accumulator) {
+        return collect(new IntCollector<Integer>() {
+            private int current = identity;
+
+            @Override
+            public boolean apply(int input) {
+                current = accumulator.applyAsInt(current, input);
+                return false;
+            }
+
+            @Override
+            public Integer finish() {
+                return current;
+            }
+        });
+    }
+
+    default OptionalInt reduce(IntBinaryOperator accumulator) {
+        return collect(new IntCollector<>() {
+            private boolean present = false;
+            private int current;
+
+            @Override
+            public boolean apply(int input) {
+                if (present) {
+                    current = accumulator.applyAsInt(current, input);
+                } else {
+                    current = input;
+                    present = true;
+                }
+                return false;
+            }
+
+            @Override
+            public OptionalInt finish() {
+                return present ? OptionalInt.of(current) : OptionalInt.empty();
+            }
+        });
+    }
+
+    default int sum() {
+        return reduce(0, Integer::sum);
+    }
+
+    default OptionalInt min() {
+        return reduce(Math::min);
+    }
+
+    default OptionalInt max() {
+        return reduce(Math::max);
+    }
+
+    default long count() {
+        return collect(new IntCollector<Long>() {
+            private long count = 0;
+
+            @Override
+            public boolean apply(int input) {
+                count++;
+                return false;
+            }
+
+            @Override
+            public Long finish() {
+                return count;
+            }
+        });
+    }
+
+    default OptionalDouble average() {
+        IntSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(statistics.getAverage());
+    }
+
+    default IntSummaryStatistics summaryStatistics() {
+        return collect(new IntCollector<>() {
+            private final IntSummaryStatistics statistics = new IntSummaryStatistics();
+
+            @Override
+            public boolean apply(int input) {
+                statistics.accept(input);
+                return false;
+            }
+
+            @Override
+            public IntSummaryStatistics finish() {
+                return statistics;
+            }
+        });
+    }
+
+    default boolean anyMatch(IntPredicate predicate) {
+        return collect(new IntCollector<Boolean>() {
+            private boolean anyMatch = false;
+
+            @Override
+            public boolean apply(int input) {
+                if (predicate.test(input)) {
+                    anyMatch = true;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public Boolean finish() {
+                return anyMatch;
+            }
+        });
+    }
+
+    default boolean allMatch(IntPredicate predicate) {
+        return !anyMatch(predicate.negate());
+    }
+
+    default boolean noneMatch(IntPredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    default OptionalInt findFirst() {
+        return collect(new IntCollector<>() {
+            private boolean present = false;
+            private int current;
+
+            @Override
+            public boolean apply(int input) {
+                current = input;
+                present = true;
+                return true;
+            }
+
+            @Override
+            public OptionalInt finish() {
+                return present ? OptionalInt.of(current) : OptionalInt.empty();
+            }
+        });
+    }
+}
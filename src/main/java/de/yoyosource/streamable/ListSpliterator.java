@@ -0,0 +1,37 @@
+package de.yoyosource.streamable;
+
+import java.util.List;
+
+/**
+ * A {@link java.util.Spliterator} over a {@link java.util.RandomAccess} list, which is bound to
+ * the size of the list on first use like the spliterators of the JDK lists, but reads the elements
+ * with {@link List#get(int)} and therefore does not detect concurrent modifications.
+ */
+final class ListSpliterator<T> extends IndexedSpliterator<T> {
+
+    private final List<T> list;
+
+    ListSpliterator(List<T> list) {
+        this(list, 0, -1, 1);
+    }
+
+    private ListSpliterator(List<T> list, long origin, long fence, long step) {
+        super(origin, fence, step);
+        this.list = list;
+    }
+
+    @Override
+    protected long length() {
+        return list.size();
+    }
+
+    @Override
+    protected T get(long index) {
+        return list.get((int) index);
+    }
+
+    @Override
+    protected IndexedSpliterator<T> create(long index, long fence, long step) {
+        return new ListSpliterator<>(list, index, fence, step);
+    }
+}
@@ -0,0 +1,13 @@
+package de.yoyosource.streamable;
+
+/**
+ * The primitive counterpart of {@link StreamableCollector} for {@link LongStreamable}.
+ */
+public interface LongCollector<R> {
+    boolean apply(long input);
+
+    R finish();
+
+    default void onClose() {
+    }
+}
@@ -0,0 +1,23 @@
+package de.yoyosource.streamable;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * The primitive counterpart of {@link StreamableGatherer} for {@link LongStreamable}.
+ */
+public interface LongGatherer {
+    boolean apply(long input, LongConsumer next);
+
+    void finish(LongConsumer next);
+
+    default void onClose() {
+    }
+
+    /**
+     * @see StreamableGatherer#slice(IndexedSource)
+     */
+    default Spliterator<?> slice(IndexedSource source) {
+        return null;
+    }
+}
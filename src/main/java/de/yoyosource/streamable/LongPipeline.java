@@ -0,0 +1,315 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+
+/**
+ * The engine behind {@link LongStreamable}. Like {@link StreamablePipeline} every stage gets one
+ * sink for the whole evaluation and values are passed as primitives from the source to the
+ * collector.
+ */
+final class LongPipeline implements LongStreamable {
+
+    private static final class Data {
+        private final Object lock = new Object();
+        private boolean evaluated;
+
+        private Spliterator.OfLong source;
+        private LongGatherer[] gatherers = new LongGatherer[8];
+        private int size;
+
+        private Data(Spliterator.OfLong source) {
+            this.source = source;
+        }
+    }
+
+    private final Data data;
+    private final int layer;
+
+    LongPipeline(Spliterator.OfLong source) {
+        this(new Data(source));
+    }
+
+    private LongPipeline(Data data) {
+        this.data = data;
+        this.layer = data.size;
+    }
+
+    private void checkMutation() {
+        if (layer != data.size) {
+            throw new IllegalStateException("This Streamable is already mutated. You cannot add another operation on this instance.");
+        }
+    }
+
+    private void evaluate() {
+        checkMutation();
+        synchronized (data.lock) {
+            if (data.evaluated) {
+                throw new IllegalStateException("Streamable is already evaluated");
+            }
+            data.evaluated = true;
+        }
+    }
+
+    /**
+     * Applies the leading gatherers which select a slice of an {@link IndexedSource} to the source.
+     *
+     * @return the number of gatherers applied to the source
+     */
+    private int slice() {
+        int sliced = 0;
+        while (sliced < data.size && data.source instanceof IndexedSource) {
+            Spliterator<?> source = data.gatherers[sliced].slice((IndexedSource) data.source);
+            if (source == null) break;
+            data.source = (Spliterator.OfLong) source;
+            sliced++;
+        }
+        return sliced;
+    }
+
+    @Override
+    public LongStreamable gather(LongGatherer gatherer) {
+        checkMutation();
+        if (data.size == data.gatherers.length) {
+            data.gatherers = Arrays.copyOf(data.gatherers, data.size * 2);
+        }
+        data.gatherers[data.size++] = gatherer;
+        return new LongPipeline(data);
+    }
+
+    @Override
+    public <R> R collect(LongCollector<R> collector) {
+        evaluate();
+        int sliced = slice();
+        Evaluation evaluation = new Evaluation(data.source, Arrays.copyOfRange(data.gatherers, sliced, data.size), collector);
+        try {
+            evaluation.run();
+            return collector.finish();
+        } finally {
+            evaluation.close();
+        }
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        evaluate();
+        int sliced = slice();
+        if (sliced == data.size) {
+            return Spliterators.iterator(data.source);
+        }
+        return new Pull(data.source, Arrays.copyOfRange(data.gatherers, sliced, data.size));
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        evaluate();
+        int sliced = slice();
+        if (sliced == data.size) {
+            return data.source;
+        }
+        return Spliterators.spliteratorUnknownSize(new Pull(data.source, Arrays.copyOfRange(data.gatherers, sliced, data.size)), data.source.characteristics() & Spliterator.ORDERED);
+    }
+
+    @Override
+    public String toString() {
+        return LongStreamable.class.getTypeName() + "@" + System.identityHashCode(this);
+    }
+
+    private abstract static class Sink implements LongConsumer {
+        protected boolean done;
+    }
+
+    private static final class GatherSink extends Sink {
+        private final Evaluation evaluation;
+        private final int index;
+        private final LongGatherer gatherer;
+        private final LongConsumer downstream;
+
+        private GatherSink(Evaluation evaluation, int index, LongGatherer gatherer, LongConsumer downstream) {
+            this.evaluation = evaluation;
+            this.index = index;
+            this.gatherer = gatherer;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void accept(long value) {
+            if (done) return;
+            if (gatherer.apply(value, downstream)) evaluation.cancel(index);
+        }
+    }
+
+    private static final class CollectSink extends Sink {
+        private final Evaluation evaluation;
+        private final int index;
+        private final LongCollector<?> collector;
+
+        private CollectSink(Evaluation evaluation, int index, LongCollector<?> collector) {
+            this.evaluation = evaluation;
+            this.index = index;
+            this.collector = collector;
+        }
+
+        @Override
+        public void accept(long value) {
+            if (done) return;
+            if (collector.apply(value)) evaluation.cancel(index);
+        }
+    }
+
+    private static final class Evaluation {
+        private final Spliterator.OfLong source;
+        private final LongGatherer[] gatherers;
+        private final LongCollector<?> collector;
+        // 'sinks[i]' accepts the input of stage i, 'sinks[gatherers.length]' is the collector
+        private final Sink[] sinks;
+
+        private boolean sourceDone;
+        private int finished;
+
+        private Evaluation(Spliterator.OfLong source, LongGatherer[] gatherers, LongCollector<?> collector) {
+            this.source = source;
+            this.gatherers = gatherers;
+            this.collector = collector;
+
+            sinks = new Sink[gatherers.length + 1];
+            sinks[gatherers.length] = new CollectSink(this, gatherers.length, collector);
+            for (int i = gatherers.length - 1; i >= 0; i--) {
+                sinks[i] = new GatherSink(this, i, gatherers[i], sinks[i + 1]);
+            }
+        }
+
+        private void cancel(int index) {
+            for (int i = 0; i <= index; i++) {
+                sinks[i].done = true;
+            }
+            if (finished < index) finished = index;
+        }
+
+        /**
+         * @return false if the evaluation has nothing left to do
+         */
+        private boolean step() {
+            if (!sourceDone) {
+                if (!sinks[0].done && source.tryAdvance(sinks[0])) return true;
+                sourceDone = true;
+            }
+            if (finished < gatherers.length) {
+                int index = finished++;
+                gatherers[index].finish(sinks[index + 1]);
+                return true;
+            }
+            return false;
+        }
+
+        private void run() {
+            Sink head = sinks[0];
+            while (!head.done) {
+                if (!source.tryAdvance(head)) break;
+            }
+            while (true) {
+                if (!step()) break;
+            }
+        }
+
+        /**
+         * @return true if no value is taken from the source anymore, so that only the finish of the stages is left
+         */
+        private boolean draining() {
+            return sourceDone || sinks[0].done;
+        }
+
+        private void close() {
+            for (LongGatherer gatherer : gatherers) {
+                gatherer.onClose();
+            }
+            collector.onClose();
+        }
+    }
+
+    private static final class Pull implements PrimitiveIterator.OfLong {
+        private long[] values = new long[16];
+        private int head;
+        private int count;
+
+        private final Evaluation evaluation;
+        private boolean closed;
+
+        private Pull(Spliterator.OfLong source, LongGatherer[] gatherers) {
+            evaluation = new Evaluation(source, gatherers, new LongCollector<>() {
+                @Override
+                public boolean apply(long input) {
+                    offer(input);
+                    return false;
+                }
+
+                @Override
+                public Object finish() {
+                    return null;
+                }
+            });
+        }
+
+        private void offer(long value) {
+            if (count == values.length) {
+                long[] resized = new long[values.length * 2];
+                for (int i = 0; i < count; i++) {
+                    resized[i] = values[(head + i) & (values.length - 1)];
+                }
+                values = resized;
+                head = 0;
+            }
+            values[(head + count) & (values.length - 1)] = value;
+            count++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (count == 0) {
+                    if (!evaluation.step()) break;
+                }
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+            if (count == 0) close();
+            return count != 0;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            try {
+                while (hasNext()) {
+                    action.accept(nextLong());
+                }
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            evaluation.close();
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long value = values[head];
+            head = (head + 1) & (values.length - 1);
+            count--;
+            // Only the finish of the stages is left, which is cheap enough to find out if this was the last value
+            if (count == 0 && evaluation.draining()) hasNext();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.*;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Streamable of primitive long values. Gatherers and collectors receive the values unboxed,
+ * values are only boxed when they leave through {@link #boxed()} or {@link #mapToObj(LongFunction)}.
+ */
+public interface LongStreamable {
+
+    static LongStreamable of(long... values) {
+        return StreamableManager.fromLongs(Arrays.spliterator(values));
+    }
+
+    static LongStreamable range(long startInclusive, long endExclusive) {
+        return range(startInclusive, endExclusive, 1);
+    }
+
+    static LongStreamable rangeClosed(long startInclusive, long endInclusive) {
+        return rangeClosed(startInclusive, endInclusive, 1);
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     */
+    static LongStreamable range(long startInclusive, long endExclusive, long step) {
+        return StreamableManager.fromLongs(Ranges.ofLong(startInclusive, endExclusive, step, false));
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     */
+    static LongStreamable rangeClosed(long startInclusive, long endInclusive, long step) {
+        return StreamableManager.fromLongs(Ranges.ofLong(startInclusive, endInclusive, step, true));
+    }
+
+    static LongStreamable from(Spliterator.OfLong spliterator) {
+        return StreamableManager.fromLongs(spliterator);
+    }
+
+    LongStreamable gather(LongGatherer gatherer);
+    <R> R collect(LongCollector<R> collector);
+
+    PrimitiveIterator.OfLong iterator();
+    Spliterator.OfLong spliterator();
+
+    default Streamable<Long> boxed() {
+        return Streamable.from(spliterator());
+    }
+
+    default <R> Streamable<R> mapToObj(LongFunction<? extends R> mapper) {
+        return Streamable.from(StreamSupport.longStream(spliterator(), false).<R>mapToObj(mapper));
+    }
+
+    default IntStreamable mapToInt(LongToIntFunction mapper) {
+        return IntStreamable.from(StreamSupport.longStream(spliterator(), false).mapToInt(mapper).spliterator());
+    }
+
+    default DoubleStreamable mapToDouble(LongToDoubleFunction mapper) {
+        return DoubleStreamable.from(StreamSupport.longStream(spliterator(), false).mapToDouble(mapper).spliterator());
+    }
+
+    default LongStreamable filter(LongPredicate predicate) {
+        return gather(new LongGatherer() {
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (predicate.test(input)) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+        });
+    }
+
+    default LongStreamable map(LongUnaryOperator mapper) {
+        return gather(new LongGatherer() {
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                next.accept(mapper.applyAsLong(input));
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+        });
+    }
+
+    default LongStreamable peek(LongConsumer action) {
+        return gather(new LongGatherer() {
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                action.accept(input);
+                next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+        });
+    }
+
+    default LongStreamable limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be a positive number");
+        }
+        return gather(new LongGatherer() {
+            private long elementsLeft = maxSize;
+
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (elementsLeft == 0) return true;
+                next.accept(input);
+                return --elementsLeft == 0;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+
+            @Override
+            public Spliterator<?> slice(IndexedSource source) {
+                return source.slice(0, maxSize, 1);
+            }
+        });
+    }
+
+    default LongStreamable skip(long skip) {
+        if (skip < 0) {
+            throw new IllegalArgumentException("skip must be a positive number");
+        }
+        return gather(new LongGatherer() {
+            private long elementsLeft = skip;
+
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (elementsLeft > 0) {
+                    elementsLeft--;
+                } else {
+                    next.accept(input);
+                }
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+
+            @Override
+            public Spliterator<?> slice(IndexedSource source) {
+                return source.slice(skip, Long.MAX_VALUE, 1);
+            }
+        });
+    }
+
+    default LongStreamable takeWhile(LongPredicate predicate) {
+        return gather(new LongGatherer() {
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (predicate.test(input)) {
+                    next.accept(input);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+        });
+    }
+
+    default LongStreamable dropWhile(LongPredicate predicate) {
+        return gather(new LongGatherer() {
+            private boolean take = false;
+
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (!take && !predicate.test(input)) take = true;
+                if (take) next.accept(input);
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+            }
+        });
+    }
+
+    default LongStreamable sorted() {
+        return gather(new LongGatherer() {
+            private long[] elements = new long[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(long input, LongConsumer next) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public void finish(LongConsumer next) {
+                Arrays.sort(elements, 0, size);
+                for (int i = 0; i < size; i++) {
+                    next.accept(elements[i]);
+                }
+            }
+        });
+    }
+
+    default void forEach(LongConsumer action) {
+        collect(new LongCollector<>() {
+            @Override
+            public boolean apply(long input) {
+                action.accept(input);
+                return false;
+            }
+
+            @Override
+            public Object finish() {
+                return null;
+            }
+        });
+    }
+
+    default long[] toArray() {
+        return collect(new LongCollector<>() {
+            private long[] elements = new long[16];
+            private int size = 0;
+
+            @Override
+            public boolean apply(long input) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, size * 2);
+                }
+                elements[size++] = input;
+                return false;
+            }
+
+            @Override
+            public long[] finish() {
+                return Arrays.copyOf(elements, size);
+            }
+        });
+    }
+
+    default long reduce(long identity, LongBinaryOperator accumulator) {
+        return collect(new LongCollector<Long>() {
+            private long current = identity;
+
+            @Override
+            public boolean apply(long input) {
+                current = accumulator.applyAsLong(current, input);
+                return false;
+            }
+
+            @Override
+            public Long finish() {
+                return current;
+            }
+        });
+    }
+
+    default OptionalLong reduce(LongBinaryOperator accumulator) {
+        return collect(new LongCollector<>() {
+            private boolean present = false;
+            private long current;
+
+            @Override
+            public boolean apply(long input) {
+                if (present) {
+                    current = accumulator.applyAsLong(current, input);
+                } else {
+                    current = input;
+                    present = true;
+                }
+                return false;
+            }
+
+            @Override
+            public OptionalLong finish() {
+                return present ? OptionalLong.of(current) : OptionalLong.empty();
+            }
+        });
+    }
+
+    default long sum() {
+        return reduce(0, Long::sum);
+    }
+
+    default OptionalLong min() {
+        return reduce(Math::min);
+    }
+
+    default OptionalLong max() {
+        return reduce(Math::max);
+    }
+
+    default long count() {
+        return collect(new LongCollector<Long>() {
+            private long count = 0;
+
+            @Override
+            public boolean apply(long input) {
+                count++;
+                return false;
+            }
+
+            @Override
+            public Long finish() {
+                return count;
+            }
+        });
+    }
+
+    default OptionalDouble average() {
+        LongSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(statistics.getAverage());
+    }
+
+    default LongSummaryStatistics summaryStatistics() {
+        return collect(new LongCollector<>() {
+            private final LongSummaryStatistics statistics = new LongSummaryStatistics();
+
+            @Override
+            public boolean apply(long input) {
+                statistics.accept(input);
+                return false;
+            }
+
+            @Override
+            public LongSummaryStatistics finish() {
+                return statistics;
+            }
+        });
+    }
+
+    default boolean anyMatch(LongPredicate predicate) {
+        return collect(new LongCollector<Boolean>() {
+            private boolean anyMatch = false;
+
+            @Override
+            public boolean apply(long input) {
+                if (predicate.test(input)) {
+                    anyMatch = true;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public Boolean finish() {
+                return anyMatch;
+            }
+        });
+    }
+
+    default boolean allMatch(LongPredicate predicate) {
+        return !anyMatch(predicate.negate());
+    }
+
+    default boolean noneMatch(LongPredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    default OptionalLong findFirst() {
+        return collect(new LongCollector<>() {
+            private boolean present = false;
+            private long current;
+
+            @Override
+            public boolean apply(long input) {
+                current = input;
+                present = true;
+                return true;
+            }
+
+            @Override
+            public OptionalLong finish() {
+                return present ? OptionalLong.of(current) : OptionalLong.empty();
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package de.yoyosource.streamable;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Sources for arithmetic progressions. The value at position {@code i} is computed as
+ * {@code from + i * step}, so the ranges know their size, skip in constant time through
+ * {@link IndexedSource} and split into halves of equal size for a parallel evaluation.
+ */
+final class Ranges {
+
+    private Ranges() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @return the number of values from {@code from} towards {@code to} in steps of {@code step}
+     * @throws IllegalArgumentException if step is 0 or the range has more than {@link Long#MAX_VALUE} values
+     */
+    static long count(BigInteger from, BigInteger to, BigInteger step, boolean closed) {
+        if (step.signum() == 0) {
+            throw new IllegalArgumentException("step must not be 0");
+        }
+        BigInteger distance = to.subtract(from);
+        if (distance.signum() != 0 && distance.signum() != step.signum()) return 0;
+        BigInteger[] steps = distance.abs().divideAndRemainder(step.abs());
+        BigInteger count = closed || steps[1].signum() != 0 ? steps[0].add(BigInteger.ONE) : steps[0];
+        if (count.bitLength() >= Long.SIZE) {
+            throw new IllegalArgumentException("range has more than " + Long.MAX_VALUE + " values");
+        }
+        return count.longValue();
+    }
+
+    static LongRange ofLong(long from, long to, long step, boolean closed) {
+        long count = count(BigInteger.valueOf(from), BigInteger.valueOf(to), BigInteger.valueOf(step), closed);
+        return new LongRange(from, step, 0, count, 1);
+    }
+
+    static BigIntegerRange ofBigInteger(BigInteger from, BigInteger to, BigInteger step, boolean closed) {
+        long count = count(from, to, step, closed);
+        return new BigIntegerRange(from, step, 0, count, 1);
+    }
+
+    private static int characteristics(int characteristics, boolean ascending) {
+        return characteristics | Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT | (ascending ? Spliterator.SORTED : 0);
+    }
+
+    static final class LongRange extends IndexedSpliterator<Long> implements Spliterator.OfLong {
+        private final long from;
+        private final long valueStep;
+
+        private LongRange(long from, long valueStep, long index, long fence, long step) {
+            super(index, fence, step);
+            this.from = from;
+            this.valueStep = valueStep;
+        }
+
+        @Override
+        protected long length() {
+            throw new IllegalStateException("The fence of a range is always bound");
+        }
+
+        private long value(long index) {
+            // Overflows of the product cancel out, as the value itself lies between from and to
+            return from + index * valueStep;
+        }
+
+        @Override
+        protected Long get(long index) {
+            return value(index);
+        }
+
+        @Override
+        protected IndexedSpliterator<Long> create(long index, long fence, long step) {
+            return new LongRange(from, valueStep, index, fence, step);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence()) return false;
+            long value = value(index);
+            index += step;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long current = index;
+            long fence = fence();
+            index = fence;
+            for (; current < fence; current += step) {
+                action.accept(value(current));
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Long> action) {
+            if (action instanceof LongConsumer) return tryAdvance((LongConsumer) action);
+            return super.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Long> action) {
+            if (action instanceof LongConsumer) {
+                forEachRemaining((LongConsumer) action);
+            } else {
+                super.forEachRemaining(action);
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return (Spliterator.OfLong) super.trySplit();
+        }
+
+        @Override
+        public int characteristics() {
+            return Ranges.characteristics(super.characteristics(), valueStep > 0);
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            if (valueStep < 0) throw new IllegalStateException();
+            return null;
+        }
+    }
+
+    static final class BigIntegerRange extends IndexedSpliterator<BigInteger> {
+        private final BigInteger from;
+        private final BigInteger valueStep;
+        // The distance between two consecutive values of this spliterator
+        private final BigInteger stride;
+
+        // The last value computed, so that consecutive values only need an addition
+        private long cachedIndex;
+        private BigInteger cached;
+
+        private BigIntegerRange(BigInteger from, BigInteger valueStep, long index, long fence, long step) {
+            super(index, fence, step);
+            this.from = from;
+            this.valueStep = valueStep;
+            this.stride = valueStep.multiply(BigInteger.valueOf(step));
+        }
+
+        @Override
+        protected long length() {
+            throw new IllegalStateException("The fence of a range is always bound");
+        }
+
+        @Override
+        protected BigInteger get(long index) {
+            if (cached != null && index == cachedIndex + step) {
+                cached = cached.add(stride);
+            } else {
+                cached = from.add(valueStep.multiply(BigInteger.valueOf(index)));
+            }
+            cachedIndex = index;
+            return cached;
+        }
+
+        @Override
+        protected IndexedSpliterator<BigInteger> create(long index, long fence, long step) {
+            return new BigIntegerRange(from, valueStep, index, fence, step);
+        }
+
+        @Override
+        public int characteristics() {
+            return Ranges.characteristics(super.characteristics(), valueStep.signum() > 0);
+        }
+
+        @Override
+        public Comparator<? super BigInteger> getComparator() {
+            if (valueStep.signum() < 0) throw new IllegalStateException();
+            return null;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package de.yoyosource.streamable;
 
-import java.util.Arrays;
+import java.math.BigInteger;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -16,11 +21,11 @@ import java.util.stream.Stream;
 public interface Streamable<T> extends Iterable<T> {
 
     static <T> Streamable<T> empty() {
-        return StreamableManager.from(Collections.emptyIterator());
+        return StreamableManager.from(Spliterators.emptySpliterator());
     }
 
     static <T> Streamable<T> of(T element) {
-        return StreamableManager.from(Collections.singletonList(element).iterator());
+        return StreamableManager.from(Collections.singletonList(element).spliterator());
     }
 
     static <T> Streamable<T> ofNullable(T element) {
@@ -30,7 +35,51 @@ public interface Streamable<T> extends Iterable<T> {
     @SafeVarargs
     @SuppressWarnings("varargs") // Creating a stream from an array is safe
     static <T> Streamable<T> of(T... elements) {
-        return StreamableManager.from(Arrays.stream(elements).iterator());
+        return StreamableManager.from(new ArraySpliterator<>(elements));
+    }
+
+    static IntStreamable ofInts(int... values) {
+        return IntStreamable.of(values);
+    }
+
+    static LongStreamable ofLongs(long... values) {
+        return LongStreamable.of(values);
+    }
+
+    static DoubleStreamable ofDoubles(double... values) {
+        return DoubleStreamable.of(values);
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     * @return the values from {@code from} up to but excluding {@code to}
+     */
+    static LongStreamable range(long from, long to, long step) {
+        return LongStreamable.range(from, to, step);
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     * @return the values from {@code from} up to and including {@code to}
+     */
+    static LongStreamable rangeClosed(long from, long to, long step) {
+        return LongStreamable.rangeClosed(from, to, step);
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     * @return the values from {@code from} up to but excluding {@code to}
+     */
+    static Streamable<BigInteger> range(BigInteger from, BigInteger to, BigInteger step) {
+        return StreamableManager.from(Ranges.ofBigInteger(from, to, step, false));
+    }
+
+    /**
+     * @param step the distance between two values, negative for a descending range
+     * @return the values from {@code from} up to and including {@code to}
+     */
+    static Streamable<BigInteger> rangeClosed(BigInteger from, BigInteger to, BigInteger step) {
+        return StreamableManager.from(Ranges.ofBigInteger(from, to, step, true));
     }
 
     static <T> Streamable<T> iterate(final T seed, final UnaryOperator<T> f) {
@@ -60,11 +109,19 @@ public interface Streamable<T> extends Iterable<T> {
     }
 
     static <T> Streamable<T> from(Stream<T> stream) {
-        return StreamableManager.from(stream.iterator());
+        Streamable<T> streamable = StreamableManager.from(stream.spliterator());
+        return stream.isParallel() ? streamable.parallel() : streamable;
     }
 
     static <T> Streamable<T> from(Iterable<T> iterable) {
-        return StreamableManager.from(iterable.iterator());
+        if (iterable instanceof List && iterable instanceof RandomAccess) {
+            return StreamableManager.from(new ListSpliterator<>((List<T>) iterable));
+        }
+        return StreamableManager.from(iterable.spliterator());
+    }
+
+    static <T> Streamable<T> from(Spliterator<T> spliterator) {
+        return StreamableManager.from(spliterator);
     }
 
     static <T> Streamable<T> from(Iterator<T> iterator) {
@@ -81,6 +138,83 @@ public interface Streamable<T> extends Iterable<T> {
 
     <S extends Streamable<T>> S as(Class<S> clazz);
 
+    /**
+     * Evaluates this Streamable in parallel. The source is split and every part runs through its
+     * own copy of the pipeline on the common {@link java.util.concurrent.ForkJoinPool}. Gatherers
+     * which are not {@link StreamableGatherer#STATELESS} act as barriers and see their input in
+     * encounter order, collectors which do not support {@link StreamableCollector#split()} receive
+     * all elements sequentially. Only {@link #collect(StreamableCollector)} is evaluated in
+     * parallel, iterating this Streamable is always sequential.
+     */
+    <S extends Streamable<T>> S parallel();
+
+    <S extends Streamable<T>> S sequential();
+
+    boolean isParallel();
+
+    /**
+     * Lets consecutive filters of this Streamable adapt their order while it is evaluated. The pass
+     * rate and the cost of every filter are sampled periodically and the cheapest and most selective
+     * filters are applied first. Only use this if the filters are independent of each other, a filter
+     * must not rely on an earlier filter to reject elements it cannot handle. Parallel evaluations
+     * keep the order of the filters.
+     */
+    <S extends Streamable<T>> S adaptive();
+
+    /**
+     * Records the metrics of every stage of this Streamable under the given pipeline name when it is
+     * evaluated. The metrics of all evaluations with the same name are aggregated and published
+     * through {@link de.yoyosource.streamable.metrics.StreamableMetrics}.
+     */
+    <S extends Streamable<T>> S instrument(String pipelineName);
+
+    /**
+     * Describes the source and the stages of this Streamable without evaluating or mutating it.
+     */
+    StreamableExplanation explain();
+
+    /**
+     * Evaluates this Streamable like {@link #collect(StreamableCollector)} and measures the wall
+     * time, CPU time and allocated bytes of every stage. The evaluation is always sequential and the
+     * measurements slow it down considerably, so they are only meaningful relative to each other.
+     */
+    <R> StreamableProfile<R> profile(StreamableCollector<? super T, R> collector);
+
+    /**
+     * Profiles this Streamable with a collector that counts the elements.
+     *
+     * @see #profile(StreamableCollector)
+     */
+    default StreamableProfile<Long> profile() {
+        return profile(new StreamableCollector<T, Long>() {
+            private long count = 0;
+
+            @Override
+            public boolean apply(T input) {
+                count++;
+                return false;
+            }
+
+            @Override
+            public Long finish() {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Without any operations this is the spliterator of the source with all its characteristics.
+     * Otherwise the spliterator keeps the order of the source and splits the source itself if all
+     * gatherers are {@link StreamableGatherer#STATELESS}, or splits off batches of elements if not.
+     */
+    @Override
+    Spliterator<T> spliterator();
+
+    default Stream<T> toStream() {
+        boolean parallel = isParallel();
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
     @Override
     default void forEach(Consumer<? super T> action) {
         collect(new StreamableCollector<>() {
@@ -0,0 +1,149 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * Consecutive filters of an {@link Streamable#adaptive()} pipeline, which are applied in the order
+ * that rejects elements the cheapest. Every filter is applied to the first {@value #SAMPLE} elements
+ * to measure its pass rate and its cost per call, then the filters are ordered by ascending
+ * {@code cost / (1 - passRate)}, which is the best order for independent filters. This repeats
+ * after every {@value #INTERVAL} elements, so the order follows filters whose selectivity drifts.
+ * The sample size and the interval can be changed with {@code -Dstreamable.adaptive.sample} and
+ * {@code -Dstreamable.adaptive.interval}.
+ */
+final class StreamableAdaptiveFilter implements StreamableGatherer<Object, Object> {
+
+    private static final int SAMPLE = 1024;
+    private static final int INTERVAL = 65536;
+    private static final int SAMPLE_SIZE = Math.max(1, Integer.getInteger("streamable.adaptive.sample", SAMPLE));
+    private static final int INTERVAL_SIZE = Math.max(1, Integer.getInteger("streamable.adaptive.interval", INTERVAL));
+
+    private final StreamableGatherer<Object, Object>[] filters;
+    private final int[] order;
+    private final long[] passed;
+    private final long[] nanos;
+    private final Capture capture = new Capture();
+
+    private boolean sampling = true;
+    private int countdown = SAMPLE_SIZE;
+
+    StreamableAdaptiveFilter(StreamableGatherer<Object, Object>[] filters) {
+        this.filters = filters;
+        this.order = new int[filters.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        this.passed = new long[filters.length];
+        this.nanos = new long[filters.length];
+    }
+
+    /**
+     * @return a filter applying the filters of {@code first} and then the filters of {@code second}
+     */
+    @SuppressWarnings("unchecked") // Generic arrays cannot be created
+    static StreamableAdaptiveFilter of(StreamableGatherer<Object, Object> first, StreamableGatherer<Object, Object> second) {
+        StreamableGatherer<Object, Object>[] head = first instanceof StreamableAdaptiveFilter ? ((StreamableAdaptiveFilter) first).filters : (StreamableGatherer<Object, Object>[]) new StreamableGatherer<?, ?>[]{first};
+        StreamableGatherer<Object, Object>[] tail = second instanceof StreamableAdaptiveFilter ? ((StreamableAdaptiveFilter) second).filters : (StreamableGatherer<Object, Object>[]) new StreamableGatherer<?, ?>[]{second};
+        StreamableGatherer<Object, Object>[] filters = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, filters, head.length, tail.length);
+        return new StreamableAdaptiveFilter(filters);
+    }
+
+    private boolean test(StreamableGatherer<Object, Object> filter, Object input) {
+        capture.passed = false;
+        filter.apply(input, capture);
+        return capture.passed;
+    }
+
+    @Override
+    public boolean apply(Object input, Consumer<Object> next) {
+        if (sampling) {
+            boolean passedAll = sample(input);
+            if (--countdown == 0) reorder();
+            if (passedAll) next.accept(input);
+            return false;
+        }
+        if (--countdown == 0) {
+            sampling = true;
+            countdown = SAMPLE_SIZE;
+        }
+        for (int index : order) {
+            if (!test(filters[index], input)) return false;
+        }
+        next.accept(input);
+        return false;
+    }
+
+    private boolean sample(Object input) {
+        boolean passedAll = true;
+        for (int i = 0; i < filters.length; i++) {
+            long start = System.nanoTime();
+            boolean passed = test(filters[i], input);
+            nanos[i] += System.nanoTime() - start;
+            if (passed) {
+                this.passed[i]++;
+            } else {
+                passedAll = false;
+            }
+        }
+        return passedAll;
+    }
+
+    private void reorder() {
+        double[] rank = new double[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            double rejectRate = 1 - passed[i] / (double) SAMPLE_SIZE;
+            rank[i] = nanos[i] / Math.max(rejectRate, 1.0 / SAMPLE_SIZE);
+            passed[i] = 0;
+            nanos[i] = 0;
+        }
+        // An insertion sort, as there are only a few filters and it keeps the order of equal ranks
+        for (int i = 1; i < order.length; i++) {
+            int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && rank[order[j]] > rank[index]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+        sampling = false;
+        countdown = INTERVAL_SIZE;
+    }
+
+    @Override
+    public void finish(Consumer<Object> next) {
+    }
+
+    @Override
+    public void onClose() {
+        for (StreamableGatherer<Object, Object> filter : filters) {
+            filter.onClose();
+        }
+    }
+
+    @Override
+    public int flags() {
+        return SIDE_EFFECT_FREE | ORDER_PRESERVING | SELECTING;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",", "adaptive(", ")");
+        for (int index : order) {
+            joiner.add(StreamableStages.operator(filters[index]));
+        }
+        return joiner.toString();
+    }
+
+    private static final class Capture implements Consumer<Object> {
+        private boolean passed;
+
+        @Override
+        public void accept(Object o) {
+            passed = true;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.yoyosource.streamable;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Chunked evaluation of a pipeline without flatGather stages. Elements are taken from the source
+ * {@value #CHUNK} at a time and every stage is called once per chunk through
+ * {@link StreamableGatherer#applyBatch(Object[], int, BatchSink)}, which moves the per element
+ * dispatch into the loops of the stages. Stateless stages without a bulk implementation fall back
+ * to one {@link StreamableGatherer#apply(Object, Consumer)} per element inside the default method.
+ */
+final class StreamableBatch {
+
+    static final int CHUNK = 256;
+
+    /**
+     * The output buffer of one stage, which is flushed into the next stage once full.
+     */
+    private static final class Chunk implements BatchSink<Object> {
+        private final StreamableBatch batch;
+        private final int stage;
+        private final Object[] values = new Object[CHUNK];
+        private int size;
+
+        private Chunk(StreamableBatch batch, int stage) {
+            this.batch = batch;
+            this.stage = stage;
+        }
+
+        @Override
+        public void accept(Object o) {
+            values[size++] = o;
+            if (size == CHUNK) flush();
+        }
+
+        @Override
+        public void acceptAll(Object[] elements, int length) {
+            int offset = 0;
+            while (offset < length) {
+                int count = Math.min(length - offset, CHUNK - size);
+                System.arraycopy(elements, offset, values, size, count);
+                size += count;
+                offset += count;
+                if (size == CHUNK) flush();
+            }
+        }
+
+        private void flush() {
+            if (size == 0) return;
+            int length = size;
+            size = 0;
+            batch.apply(stage, values, length);
+            // Downstream stages must not keep the chunk, so it can be reused right away
+            Arrays.fill(values, 0, length, null);
+        }
+    }
+
+    private static final class Filler implements Consumer<Object> {
+        private Object[] buffer;
+        private int size;
+
+        @Override
+        public void accept(Object o) {
+            buffer[size++] = o;
+        }
+    }
+
+    private final Spliterator<?> source;
+    private final StreamableGatherer<Object, Object>[] gatherers;
+    private final StreamableCollector<Object, ?> collector;
+    // 'chunks[i]' collects the output of stage i, which is the input of stage i + 1
+    private final Chunk[] chunks;
+
+    // Stages up to and including this index are done, see StreamablePipeline#cancel(int)
+    private int cancelled = -1;
+    private int finished;
+
+    StreamableBatch(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, int size, StreamableCollector<Object, ?> collector) {
+        this.source = source;
+        this.gatherers = Arrays.copyOf(gatherers, size);
+        this.collector = collector;
+
+        chunks = new Chunk[size];
+        for (int i = 0; i < size; i++) {
+            chunks[i] = new Chunk(this, i + 1);
+        }
+    }
+
+    /**
+     * @return true if the pipeline has no flatGather stages and none of its stages can short-circuit,
+     * so that taking a whole chunk from the source never does more work than the element wise evaluation
+     */
+    static boolean supports(StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        if ((collector.flags() & StreamableCollector.BATCH) == 0) return false;
+        for (int i = 0; i < size; i++) {
+            if (flat[i]) return false;
+            if ((gatherers[i].flags() & (StreamableGatherer.BATCH | StreamableGatherer.STATELESS)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void cancel(int index) {
+        if (cancelled < index) cancelled = index;
+        if (finished < index) finished = index;
+    }
+
+    private void apply(int stage, Object[] input, int length) {
+        if (stage <= cancelled) return;
+        if (stage == gatherers.length) {
+            if (collector.applyBatch(input, length)) cancel(stage);
+            return;
+        }
+
+        Chunk chunk = chunks[stage];
+        if (gatherers[stage].applyBatch(input, length, chunk)) cancel(stage);
+        chunk.flush();
+    }
+
+    Object run() {
+        try {
+            return evaluate();
+        } finally {
+            for (StreamableGatherer<Object, Object> gatherer : gatherers) {
+                gatherer.onClose();
+            }
+            collector.onClose();
+        }
+    }
+
+    private Object evaluate() {
+        Object[] buffer = new Object[CHUNK];
+        Filler filler = source instanceof BulkSource ? null : new Filler();
+        while (cancelled < 0) {
+            int length;
+            if (filler == null) {
+                length = ((BulkSource) source).fill(buffer);
+            } else {
+                filler.buffer = buffer;
+                filler.size = 0;
+                while (filler.size < CHUNK) {
+                    if (!source.tryAdvance(filler)) break;
+                }
+                length = filler.size;
+            }
+            if (length == 0) break;
+            apply(0, buffer, length);
+        }
+
+        while (finished < gatherers.length) {
+            int index = finished++;
+            Chunk chunk = chunks[index];
+            gatherers[index].finish(chunk);
+            chunk.flush();
+        }
+        return collector.finish();
+    }
+}
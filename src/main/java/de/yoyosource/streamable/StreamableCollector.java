@@ -1,10 +1,80 @@
 package de.yoyosource.streamable;
 
 public interface StreamableCollector<I, R> {
+
+    /**
+     * The collector overrides {@link #applyBatch(Object[], int)} with a bulk implementation and
+     * never short-circuits, see {@link StreamableGatherer#BATCH}.
+     */
+    int BATCH = StreamableGatherer.BATCH;
+
+    /**
+     * The collector may return true from {@link #apply(Object)}, see {@link StreamableGatherer#SHORT_CIRCUIT}.
+     */
+    int SHORT_CIRCUIT = StreamableGatherer.SHORT_CIRCUIT;
+
+    /**
+     * The result of the collector only depends on the number of elements and not on their values,
+     * so the optimizer may remove {@link StreamableGatherer#SIZE_PRESERVING} and
+     * {@link StreamableGatherer#SIDE_EFFECT_FREE} gatherers in front of it. If no gatherer is left
+     * and the source knows its size the collector only receives {@link #exactSize(long)}.
+     */
+    int COUNTING = 0x80;
+
     boolean apply(I input);
 
+    /**
+     * Collects the first {@code length} elements of {@code input}, which must not be kept after this
+     * call returns.
+     *
+     * @return true to short-circuit
+     */
+    @SuppressWarnings("unchecked") // A batch only holds the input elements of this stage
+    default boolean applyBatch(Object[] input, int length) {
+        for (int i = 0; i < length; i++) {
+            if (apply((I) input[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called once before the first element if the number of elements this collector receives is
+     * known, which can be used to presize the result. A {@link #COUNTING} collector is only called
+     * if the pipeline is not evaluated at all, as its result is known from the size alone.
+     */
+    default void exactSize(long size) {
+    }
+
     R finish();
 
     default void onClose() {
     }
+
+    /**
+     * @return a combination of the flags declared in this interface, describing the collector
+     */
+    default int flags() {
+        return 0;
+    }
+
+    /**
+     * Creates a new and empty collector of the same kind, which collects one part of the input in
+     * a parallel evaluation. The results of all parts are merged with {@link #combine(Object, Object)}.
+     *
+     * @return the new collector or null if this collector cannot collect in parallel
+     */
+    default StreamableCollector<I, R> split() {
+        return null;
+    }
+
+    /**
+     * Combines the results of two collectors created by {@link #split()}.
+     *
+     * @param left the result of the part that comes first in encounter order
+     * @param right the result of the part that comes second in encounter order
+     * @return the result of both parts
+     */
+    default R combine(R left, R right) {
+        throw new UnsupportedOperationException("This collector cannot be combined");
+    }
 }
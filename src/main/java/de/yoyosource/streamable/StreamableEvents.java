@@ -0,0 +1,225 @@
+package de.yoyosource.streamable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDK Flight Recorder events of pipeline evaluations. The stages are only wrapped while a recording
+ * has {@code de.yoyosource.streamable.Evaluation} enabled, otherwise evaluations are untouched.
+ * <p>
+ * Every {@value #SAMPLE_INTERVAL}th element a gatherer applies one by one is timed and recorded as an
+ * {@code de.yoyosource.streamable.ElementSample}, the interval can be changed with
+ * {@code -Dstreamable.jfr.sampleInterval}. Chunks of a batched evaluation are not sampled.
+ */
+final class StreamableEvents {
+
+    private StreamableEvents() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final int SAMPLE_INTERVAL = 1024;
+    private static final int INTERVAL = Math.max(1, Integer.getInteger("streamable.jfr.sampleInterval", SAMPLE_INTERVAL));
+
+    private static final EventType SAMPLE_TYPE = EventType.getEventType(ElementSampleEvent.class);
+
+    @Name("de.yoyosource.streamable.Evaluation")
+    @Label("Streamable Evaluation")
+    @Category("Streamable")
+    @Description("One evaluation of a pipeline, from the start of the evaluation until its stages are closed")
+    static final class EvaluationEvent extends Event {
+        @Label("Pipeline")
+        @Description("The operators of the pipeline in order, the last one is the collector")
+        String pipeline;
+
+        @Label("Mode")
+        String mode;
+
+        @Label("Stages")
+        int stages;
+
+        @Label("Elements In")
+        @Description("Elements taken from the source")
+        long elementsIn;
+
+        @Label("Elements Out")
+        @Description("Elements that reached the collector or the iterator")
+        long elementsOut;
+    }
+
+    @Name("de.yoyosource.streamable.Stage")
+    @Label("Streamable Stage")
+    @Category("Streamable")
+    @Description("The finish or onClose call of one stage")
+    static final class StageEvent extends Event {
+        @Label("Pipeline")
+        String pipeline;
+
+        @Label("Index")
+        int index;
+
+        @Label("Operator")
+        String operator;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("de.yoyosource.streamable.ElementSample")
+    @Label("Streamable Element Sample")
+    @Category("Streamable")
+    @Description("The time one sampled element spent in a gatherer, including its downstream stages")
+    static final class ElementSampleEvent extends Event {
+        @Label("Pipeline")
+        String pipeline;
+
+        @Label("Index")
+        int index;
+
+        @Label("Operator")
+        String operator;
+    }
+
+    /**
+     * State shared by the wrapped stages of one evaluation.
+     */
+    private static final class Evaluation {
+        private final EvaluationEvent event = new EvaluationEvent();
+        private final String pipeline;
+        private final String mode;
+        private final int stages;
+        private final boolean sample = SAMPLE_TYPE.isEnabled();
+        private final LongAdder elementsIn = new LongAdder();
+        private final LongAdder elementsOut = new LongAdder();
+
+        private Evaluation(String pipeline, String mode, int stages) {
+            this.pipeline = pipeline;
+            this.mode = mode;
+            this.stages = stages;
+            event.begin();
+        }
+
+        private void commit() {
+            event.end();
+            if (!event.shouldCommit()) return;
+            event.pipeline = pipeline;
+            event.mode = mode;
+            event.stages = stages;
+            event.elementsIn = elementsIn.sum();
+            event.elementsOut = elementsOut.sum();
+            event.commit();
+        }
+    }
+
+    /**
+     * Replaces the first {@code size} gatherers and returns the collector to use instead of
+     * {@code collector}. If {@code collector} is null the last gatherer takes its place, which is
+     * the NOOP_GATHERER of a pull based evaluation.
+     */
+    static StreamableCollector<Object, ?> instrument(String mode, StreamableGatherer<Object, Object>[] gatherers, int size, StreamableCollector<Object, ?> collector) {
+        if (!new EvaluationEvent().isEnabled()) return collector;
+
+        int stages = collector == null ? size - 1 : size;
+        StringJoiner pipeline = new StringJoiner(" -> ");
+        for (int i = 0; i < stages; i++) {
+            pipeline.add(StreamableStages.operator(gatherers[i]));
+        }
+        pipeline.add(collector == null ? "iterator" : StreamableStages.operator(collector));
+
+        Evaluation evaluation = new Evaluation(pipeline.toString(), mode, stages);
+        for (int i = 0; i < stages; i++) {
+            gatherers[i] = StreamableStages.wrap(gatherers[i], false, new EventProbe(evaluation, i, StreamableStages.operator(gatherers[i]), false, false, true));
+        }
+        if (collector == null) {
+            gatherers[stages] = StreamableStages.wrap(gatherers[stages], false, new EventProbe(evaluation, stages, "iterator", true, false, true));
+            return null;
+        }
+        return StreamableStages.wrap(collector, new EventProbe(evaluation, stages, StreamableStages.operator(collector), true, true, true));
+    }
+
+    /**
+     * Counts the elements of one stage into the evaluation and records its events.
+     */
+    private static final class EventProbe extends StreamableStages.Probe {
+        private final Evaluation evaluation;
+        private final int index;
+        private final String operator;
+        // Whether this is the collector or the last gatherer of a pull based evaluation, which counts the output
+        private final boolean terminal;
+        private final boolean collector;
+        // Whether closing the stage ends the evaluation, which is false for the parts of a collector split off
+        // for a parallel evaluation, the parts only add their counts to the evaluation
+        private final boolean root;
+        private int countdown = INTERVAL;
+
+        private EventProbe(Evaluation evaluation, int index, String operator, boolean terminal, boolean collector, boolean root) {
+            super(0, false);
+            this.evaluation = evaluation;
+            this.index = index;
+            this.operator = operator;
+            this.terminal = terminal;
+            this.collector = collector;
+            this.root = root;
+        }
+
+        @Override
+        void in(long count) {
+            if (index == 0) evaluation.elementsIn.add(count);
+            if (terminal) evaluation.elementsOut.add(count);
+        }
+
+        @Override
+        Object before(StreamableStages.Phase phase) {
+            if (phase == StreamableStages.Phase.APPLY) {
+                // Racy for gatherers shared by a parallel evaluation, which only shifts the samples
+                if (collector || !evaluation.sample || --countdown > 0) return null;
+                countdown = INTERVAL;
+                ElementSampleEvent sample = new ElementSampleEvent();
+                sample.begin();
+                return sample;
+            }
+            if ((phase == StreamableStages.Phase.FINISH && !collector) || (phase == StreamableStages.Phase.CLOSE && root)) {
+                StageEvent event = new StageEvent();
+                event.begin();
+                return event;
+            }
+            return null;
+        }
+
+        @Override
+        void after(StreamableStages.Phase phase, Object state) {
+            if (state instanceof ElementSampleEvent) {
+                ElementSampleEvent sample = (ElementSampleEvent) state;
+                sample.end();
+                if (sample.shouldCommit()) {
+                    sample.pipeline = evaluation.pipeline;
+                    sample.index = index;
+                    sample.operator = operator;
+                    sample.commit();
+                }
+            } else if (state instanceof StageEvent) {
+                StageEvent event = (StageEvent) state;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.pipeline = evaluation.pipeline;
+                    event.index = index;
+                    event.operator = operator;
+                    event.phase = phase == StreamableStages.Phase.FINISH ? "finish" : "onClose";
+                    event.commit();
+                }
+            }
+            if (phase == StreamableStages.Phase.CLOSE && terminal && root) evaluation.commit();
+        }
+
+        @Override
+        StreamableStages.Probe split() {
+            return new EventProbe(evaluation, index, operator, terminal, collector, false);
+        }
+    }
+}
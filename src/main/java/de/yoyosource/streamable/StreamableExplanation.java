@@ -0,0 +1,129 @@
+package de.yoyosource.streamable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.StringJoiner;
+
+/**
+ * The description of a Streamable returned by {@link Streamable#explain()}: its source and every
+ * stage in the order they are applied. The operator of a stage is the name of the method that
+ * added it, like {@code filter} or {@code flatMap}.
+ */
+public final class StreamableExplanation {
+
+    private static final int[] CHARACTERISTICS = {
+            Spliterator.ORDERED, Spliterator.DISTINCT, Spliterator.SORTED, Spliterator.SIZED,
+            Spliterator.NONNULL, Spliterator.IMMUTABLE, Spliterator.CONCURRENT, Spliterator.SUBSIZED
+    };
+    private static final String[] CHARACTERISTIC_NAMES = {
+            "ORDERED", "DISTINCT", "SORTED", "SIZED", "NONNULL", "IMMUTABLE", "CONCURRENT", "SUBSIZED"
+    };
+
+    private final long estimatedSize;
+    private final int characteristics;
+    private final boolean parallel;
+    private final List<Stage> stages;
+
+    StreamableExplanation(long estimatedSize, int characteristics, boolean parallel, List<Stage> stages) {
+        this.estimatedSize = estimatedSize;
+        this.characteristics = characteristics;
+        this.parallel = parallel;
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * @return the estimated size of the source, {@link Long#MAX_VALUE} if it is unknown
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * @return the {@link Spliterator} characteristics of the source
+     */
+    public int getCharacteristics() {
+        return characteristics;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("source size=").append(estimatedSize == Long.MAX_VALUE ? "unknown" : String.valueOf(estimatedSize));
+        StringJoiner joiner = new StringJoiner(", ", " [", "]");
+        for (int i = 0; i < CHARACTERISTICS.length; i++) {
+            if ((characteristics & CHARACTERISTICS[i]) != 0) joiner.add(CHARACTERISTIC_NAMES[i]);
+        }
+        builder.append(joiner).append(parallel ? " parallel" : " sequential");
+        for (Stage stage : stages) {
+            builder.append(System.lineSeparator()).append(stage);
+        }
+        return builder.toString();
+    }
+
+    public static final class Stage {
+        private final int index;
+        private final String operator;
+        private final boolean flat;
+        private final int flags;
+
+        Stage(int index, String operator, boolean flat, int flags) {
+            this.index = index;
+            this.operator = operator;
+            this.flat = flat;
+            this.flags = flags;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        /**
+         * @return true if the stage was added by {@link Streamable#flatGather(StreamableGatherer)}
+         */
+        public boolean isFlat() {
+            return flat;
+        }
+
+        /**
+         * @return the {@link StreamableGatherer#flags()} of the stage
+         */
+        public int getFlags() {
+            return flags;
+        }
+
+        public boolean isStateless() {
+            return (flags & StreamableGatherer.STATELESS) != 0;
+        }
+
+        public boolean isShortCircuiting() {
+            return (flags & StreamableGatherer.SHORT_CIRCUIT) != 0;
+        }
+
+        public boolean isBatch() {
+            return (flags & StreamableGatherer.BATCH) != 0;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", " (", ")");
+            joiner.add(flat ? "flat" : "plain");
+            joiner.add(isStateless() ? "stateless" : "stateful");
+            if (isShortCircuiting()) joiner.add("short-circuit");
+            if (isBatch()) joiner.add("batch");
+            return "  " + index + ": " + operator + joiner;
+        }
+    }
+}
@@ -1,12 +1,160 @@
 package de.yoyosource.streamable;
 
+import java.util.Comparator;
+import java.util.Spliterator;
 import java.util.function.Consumer;
 
 public interface StreamableGatherer<I, O> {
+
+    /**
+     * The gatherer keeps no state between elements and never short-circuits, so the same instance
+     * can be applied to independent parts of the input concurrently in a parallel evaluation.
+     */
+    int STATELESS = 0x1;
+
+    /**
+     * The gatherer overrides {@link #applyBatch(Object[], int, BatchSink)} with a bulk implementation
+     * and never short-circuits. A pipeline is evaluated in chunks if its collector has this flag and
+     * every gatherer has this flag or {@link #STATELESS}, as nothing in it can stop early and waste
+     * the rest of a chunk.
+     */
+    int BATCH = 0x2;
+
+    /**
+     * The gatherer may return true from {@link #apply(Object, Consumer)} and end the evaluation
+     * before the source is exhausted. This is only descriptive and shown by {@link Streamable#explain()}.
+     */
+    int SHORT_CIRCUIT = 0x4;
+
+    /**
+     * The gatherer has no effect besides its output, so the optimizer may remove it or change the
+     * number of times it is applied when the result stays the same.
+     */
+    int SIDE_EFFECT_FREE = 0x8;
+
+    /**
+     * The gatherer passes on its output in the encounter order of the input it was created from.
+     */
+    int ORDER_PRESERVING = 0x10;
+
+    /**
+     * The gatherer passes on exactly as many elements as it receives. For a gatherer added by
+     * {@link Streamable#flatGather(StreamableGatherer)} this counts the elements of the emitted iterables.
+     */
+    int SIZE_PRESERVING = 0x20;
+
+    /**
+     * The gatherer only passes on its input elements unchanged and decides which of them to pass on,
+     * and in which order, by their values alone and never by their position, like filter, distinct or sorted.
+     * Stateless, side effect free and order preserving gatherers with this flag are filters, which the
+     * optimizer moves ahead of the stateful gatherers with this flag.
+     */
+    int SELECTING = 0x40;
+
     boolean apply(I input, Consumer<O> next);
 
     void finish(Consumer<O> next);
 
+    /**
+     * Applies the first {@code length} elements of {@code input}, which must not be kept after this
+     * call returns, and passes the output on to {@code next}.
+     *
+     * @return true to short-circuit, the remaining elements of the batch are then dropped
+     */
+    @SuppressWarnings("unchecked") // A batch only holds the input elements of this stage
+    default boolean applyBatch(Object[] input, int length, BatchSink<O> next) {
+        for (int i = 0; i < length; i++) {
+            if (apply((I) input[i], next)) return true;
+        }
+        return false;
+    }
+
     default void onClose() {
     }
+
+    /**
+     * @return the number of elements this gatherer currently holds, which is reported by instrumented pipelines
+     */
+    default long buffered() {
+        return 0;
+    }
+
+    /**
+     * Describes the output of this gatherer by the {@link Spliterator} characteristics ORDERED,
+     * DISTINCT, SORTED, SIZED, SUBSIZED and NONNULL. By default these are derived from
+     * {@link #flags()}: {@link #SIZE_PRESERVING} keeps SIZED and SUBSIZED, {@link #ORDER_PRESERVING}
+     * keeps ORDERED, and both {@link #SELECTING} and {@link #ORDER_PRESERVING} keep DISTINCT, SORTED
+     * and NONNULL.
+     *
+     * @param characteristics the characteristics of the input
+     * @return the characteristics of the output
+     */
+    default int characteristics(int characteristics) {
+        int flags = flags();
+        int result = 0;
+        if ((flags & SIZE_PRESERVING) != 0) result |= characteristics & (Spliterator.SIZED | Spliterator.SUBSIZED);
+        if ((flags & ORDER_PRESERVING) != 0) result |= characteristics & Spliterator.ORDERED;
+        if ((flags & (SELECTING | ORDER_PRESERVING)) == (SELECTING | ORDER_PRESERVING)) {
+            result |= characteristics & (Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+        }
+        return result;
+    }
+
+    /**
+     * @param comparator the comparator of a SORTED input, null for the natural order
+     * @return the comparator of the output if {@link #characteristics(int)} reports it as SORTED
+     */
+    default Comparator<?> comparator(Comparator<?> comparator) {
+        return comparator;
+    }
+
+    /**
+     * @param characteristics the characteristics of the input, see {@link #characteristics(int)}
+     * @param comparator the comparator of a SORTED input, null for the natural order
+     * @return true if this gatherer would pass on such an input unchanged, so that the optimizer can remove it
+     */
+    default boolean redundant(int characteristics, Comparator<?> comparator) {
+        return false;
+    }
+
+    /**
+     * Applies this gatherer directly to an {@link IndexedSource}, which is used by the optimizer
+     * for the first gatherers of a pipeline, so that skipped elements are never visited.
+     *
+     * @return the source with this gatherer applied or null if this gatherer cannot be expressed as a slice
+     */
+    default Spliterator<?> slice(IndexedSource source) {
+        return null;
+    }
+
+    /**
+     * Combines this gatherer with the gatherer directly following it into one gatherer, which is
+     * used by the optimizer before an evaluation. The returned gatherer is added the same way as
+     * this gatherer, with {@link Streamable#flatGather(StreamableGatherer)} or not, and
+     * {@code next} is never added by {@link Streamable#flatGather(StreamableGatherer)}.
+     *
+     * @param next the gatherer receiving the output of this gatherer
+     * @return the combined gatherer or null if they cannot be combined
+     */
+    default StreamableGatherer<I, ?> fuse(StreamableGatherer<?, ?> next) {
+        return null;
+    }
+
+    /**
+     * Combines this gatherer with the collector directly following it into one collector, which
+     * is used by the optimizer before an evaluation.
+     *
+     * @param collector the collector receiving the output of this gatherer
+     * @return the combined collector or null if they cannot be combined
+     */
+    default <R> StreamableCollector<I, R> fuse(StreamableCollector<?, R> collector) {
+        return null;
+    }
+
+    /**
+     * @return a combination of the flags declared in this interface, describing the gatherer
+     */
+    default int flags() {
+        return 0;
+    }
 }
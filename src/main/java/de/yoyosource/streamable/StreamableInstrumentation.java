@@ -0,0 +1,69 @@
+package de.yoyosource.streamable;
+
+import de.yoyosource.streamable.metrics.PipelineMetrics;
+import de.yoyosource.streamable.metrics.StageMetrics;
+
+/**
+ * Wraps the stages of a pipeline evaluated with {@link Streamable#instrument(String)} to record
+ * their {@link StageMetrics}. Pipelines without a name never see these classes.
+ */
+final class StreamableInstrumentation {
+
+    private StreamableInstrumentation() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Replaces the first {@code size} gatherers and returns the collector to use instead of {@code collector}.
+     */
+    static StreamableCollector<Object, ?> instrument(PipelineMetrics metrics, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        metrics.recordEvaluation();
+        for (int i = 0; i < size; i++) {
+            gatherers[i] = StreamableStages.wrap(gatherers[i], flat[i], new MetricsProbe(metrics.stage(i, StreamableStages.operator(gatherers[i]))));
+        }
+        if (collector == null) return null;
+        return StreamableStages.wrap(collector, new MetricsProbe(metrics.stage(size, StreamableStages.operator(collector))));
+    }
+
+    /**
+     * Records the calls of one stage to its {@link StageMetrics}, timed by the wall clock.
+     */
+    private static final class MetricsProbe extends StreamableStages.Probe {
+        private final StageMetrics metrics;
+
+        private MetricsProbe(StageMetrics metrics) {
+            super(1, true);
+            this.metrics = metrics;
+        }
+
+        @Override
+        void read(long[] values) {
+            values[0] = System.nanoTime();
+        }
+
+        @Override
+        void time(long[] elapsed) {
+            metrics.recordTime(elapsed[0]);
+        }
+
+        @Override
+        void in(long count) {
+            metrics.recordIn(count);
+        }
+
+        @Override
+        void out(long count) {
+            metrics.recordOut(count);
+        }
+
+        @Override
+        void buffered(long buffered) {
+            metrics.recordBuffered(buffered);
+        }
+
+        @Override
+        void shortCircuit() {
+            metrics.recordShortCircuit();
+        }
+    }
+}
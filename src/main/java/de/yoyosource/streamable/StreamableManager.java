@@ -1,13 +1,17 @@
 package de.yoyosource.streamable;
 
+import de.yoyosource.streamable.metrics.StreamableMetrics;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 
 public class StreamableManager {
@@ -16,49 +20,54 @@ public class StreamableManager {
         throw new IllegalStateException("Utility class");
     }
 
-    private static final StreamableGatherer NOOP_GATHERER = new StreamableGatherer() {
+    private static final StreamableGatherer<Object, Object> NOOP_GATHERER = new StreamableGatherer<>() {
         @Override
-        public boolean apply(Object input, Consumer next) {
+        public boolean apply(Object input, Consumer<Object> next) {
             next.accept(input);
             return false;
         }
 
         @Override
-        public void finish(Consumer next) {
-
-        }
-    };
-
-    private static final class Pair<A, B> {
-        private final A first;
-        private final B second;
+        public void finish(Consumer<Object> next) {
 
-        public Pair(A first, B second) {
-            this.first = first;
-            this.second = second;
         }
 
         @Override
-        public String toString() {
-            return "Pair{" +
-                    "first=" + first +
-                    ", second=" + second +
-                    '}';
+        public int flags() {
+            return STATELESS;
         }
-    }
+    };
 
     private static class StreamData {
         private final Object lock = new Object();
         private boolean evaluated;
 
-        private final Iterator iterator;
-        private List<Pair<StreamableGatherer, Boolean>> gatherers = new ArrayList<>();
+        private final Spliterator<?> spliterator;
+        private boolean parallel;
+        // Whether consecutive filters are reordered by their measured cost and selectivity
+        private boolean adaptive;
+        // Name of the pipeline metrics this pipeline is recorded to, or null if it is not instrumented
+        private String metrics;
+        private StreamableGatherer<Object, Object>[] gatherers = new StreamableGatherer[8];
+        // 'flat[i]' denoting if 'gatherers[i]' was added by flatGather instead of gather
+        private boolean[] flat = new boolean[8];
+        private int size;
+
+        private StreamData(Spliterator<?> spliterator) {
+            this.spliterator = spliterator;
+        }
 
-        private StreamData(Iterator iterator) {
-            this.iterator = iterator;
+        private void add(StreamableGatherer<Object, Object> gatherer, boolean flatGather) {
+            if (size == gatherers.length) {
+                gatherers = Arrays.copyOf(gatherers, size * 2);
+                flat = Arrays.copyOf(flat, size * 2);
+            }
+            gatherers[size] = gatherer;
+            flat[size] = flatGather;
+            size++;
         }
 
-        private Object run(StreamableCollector collector) {
+        private Object run(StreamableCollector<Object, ?> collector) {
             synchronized (lock) {
                 if (evaluated) {
                     throw new IllegalStateException("Streamable is already evaluated");
@@ -66,98 +75,70 @@ public class StreamableManager {
                 evaluated = true;
             }
 
-            List<Pair<Iterator, Integer>> iterators = new ArrayList<>();
-            iterators.add(new Pair<>(iterator, 0));
-
-            while (!iterators.isEmpty()) {
-                Pair<Iterator, Integer> pair = null;
-                for (int i = iterators.size() - 1; i >= 0; i--) {
-                    Pair<Iterator, Integer> current = iterators.get(i);
-                    if (current.first.hasNext()) {
-                        pair = current;
-                        break;
-                    } else {
-                        iterators.remove(i);
+            StreamableOptimizer optimizer = optimize(collector);
+            Spliterator<?> spliterator = optimizer.source();
+            int size = optimizer.size();
+            collector = optimizer.collector();
+            long exactSize = optimizer.exactSize();
+            if (metrics != null) {
+                collector = StreamableInstrumentation.instrument(StreamableMetrics.pipeline(metrics), gatherers, flat, size, collector);
+            }
+            collector = StreamableEvents.instrument(parallel ? "parallel" : "collect", gatherers, size, collector);
+            if (exactSize >= 0) {
+                if ((collector.flags() & StreamableCollector.COUNTING) == 0) {
+                    if (!parallel) collector.exactSize(exactSize);
+                } else if (size == 0) {
+                    try {
+                        collector.exactSize(exactSize);
+                        return collector.finish();
+                    } finally {
+                        collector.onClose();
                     }
                 }
-                if (pair == null) break;
-                apply(iterators, pair.first.next(), pair.second, !pair.first.hasNext(), collector);
             }
-
-            Object result = collector.finish();
-            gatherers.forEach(pair -> pair.first.onClose());
-            collector.onClose();
-            return result;
+            if (parallel) {
+                return StreamableParallel.run(spliterator, gatherers, flat, size, collector);
+            }
+            if (StreamableBatch.supports(gatherers, flat, size, collector)) {
+                return new StreamableBatch(spliterator, gatherers, size, collector).run();
+            }
+            return new StreamablePipeline(spliterator, gatherers, flat, size, collector).run();
         }
 
-        private boolean apply(List<Pair<Iterator, Integer>> iterators, Object o, int index, boolean runFinished, StreamableCollector collector) {
-            // Run Collector if last apply in chain
-            if (index >= gatherers.size()) {
-                if (collector.apply(o)) {
-                    iterators.clear();
-                    return true;
-                } else {
-                    return false;
+        private Iterator<Object> iterator() {
+            synchronized (lock) {
+                if (evaluated) {
+                    throw new IllegalStateException("Streamable is already evaluated");
                 }
+                evaluated = true;
             }
 
-            int removeUntil = iterators.size();
-            // 'ignoreRest' meaning that any further elements should be ignored set by subsequent apply calls.
-            AtomicBoolean ignoreRest = new AtomicBoolean(false);
-            Pair<StreamableGatherer, Boolean> pair = gatherers.get(index);
-            // 'finished’ meaning that no more values should be accepted after this element from previous iterators
-            boolean finished = pair.first.apply(o, next -> {
-                if (ignoreRest.get()) return;
-                // 'pair.second' denoting if this is a flatGather instead of a gather
-                if (pair.second) {
-                    iterators.add(removeUntil, new Pair<>(((Iterable) next).iterator(), index + 1));
-                } else {
-                    if (apply(iterators, next, index + 1, runFinished, collector)) {
-                        ignoreRest.set(true);
-                    }
-                }
-            });
+            if (size == 1) {
+                return Spliterators.iterator(spliterator);
+            }
+            StreamableOptimizer optimizer = optimizePull();
+            Spliterator<?> spliterator = optimizer.source();
+            int size = optimizer.size() + 1;
+            instrument(size);
+            StreamableEvents.instrument("iterator", gatherers, size, null);
+            return new StreamablePipeline.Pull(spliterator, gatherers, flat, size, null);
+        }
 
-            // If the current gatherer says, that no previous iterators should be evaluated they will be removed
-            if (finished) {
-                for (int i = removeUntil - 1; i >= 0; i--) {
-                    iterators.set(i, new Pair<>(Collections.emptyIterator(), iterators.get(i).second));
+        private StreamableExplanation explain() {
+            synchronized (lock) {
+                if (evaluated) {
+                    throw new IllegalStateException("Streamable is already evaluated");
                 }
             }
 
-            if (finished || runFinished) {
-                AtomicBoolean isFinished = new AtomicBoolean(false);
-                for (int i = index; i < gatherers.size(); i++) {
-                    ignoreRest.set(false);
-                    final int finalI = i;
-                    int iteratorIndex = iterators.size();
-
-                    Pair<StreamableGatherer, Boolean> finishPair = gatherers.get(finalI);
-
-                    // Run finish methods of every gatherer
-                    finishPair.first.finish(next -> {
-                        isFinished.set(true);
-                        if (ignoreRest.get()) return;
-                        // 'pair.second' denoting if this is a flatGather instead of a gather
-                        if (finishPair.second) {
-                            iterators.add(iteratorIndex, new Pair<>(((Iterable) o).iterator(), finalI + 1));
-                        } else {
-                            if (apply(iterators, next, finalI + 1, true, collector)) {
-                                ignoreRest.set(true);
-                            }
-                        }
-                    });
-
-                    // If any elements were produced by the finish method no more gatherers needs to be run,
-                    // either because they were called by the recursive apply method
-                    // or because a new iterator is now present to be evaluated next.
-                    if (isFinished.get()) break;
-                }
+            List<StreamableExplanation.Stage> stages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                stages.add(new StreamableExplanation.Stage(i, StreamableStages.operator(gatherers[i]), flat[i], gatherers[i].flags()));
             }
-            return finished;
+            return new StreamableExplanation(spliterator.estimateSize(), spliterator.characteristics(), parallel, stages);
         }
 
-        private Iterator<Object> iterator() {
+        private StreamableProfile<?> profile(StreamableCollector<Object, ?> collector) {
             synchronized (lock) {
                 if (evaluated) {
                     throw new IllegalStateException("Streamable is already evaluated");
@@ -165,84 +146,85 @@ public class StreamableManager {
                 evaluated = true;
             }
 
-            if (gatherers.size() == 1) {
-                return iterator;
+            StreamableOptimizer optimizer = optimize(collector);
+            Spliterator<?> spliterator = optimizer.source();
+            int size = optimizer.size();
+            collector = optimizer.collector();
+            long exactSize = optimizer.exactSize();
+            if (exactSize >= 0 && (collector.flags() & StreamableCollector.COUNTING) == 0) {
+                collector.exactSize(exactSize);
             }
+            return StreamableProfiler.profile(spliterator, gatherers, flat, size, collector);
+        }
 
-            return new Iterator<>() {
-                private List<Pair<Iterator, Integer>> iterators = new ArrayList<>();
-
-                private List<Object> values = new ArrayList<>();
-
-                private StreamableCollector collector = new StreamableCollector() {
-                    @Override
-                    public boolean apply(Object input) {
-                        values.add(input);
-                        return false;
-                    }
+        private StreamableOptimizer optimize(StreamableCollector<Object, ?> collector) {
+            StreamableOptimizer optimizer = new StreamableOptimizer(spliterator, gatherers, flat, size, collector);
+            return StreamableOptimizer.ENABLED ? optimizer.adaptive(adaptive && !parallel).optimize() : optimizer;
+        }
 
-                    @Override
-                    public Object finish() {
-                        return null;
-                    }
-                };
-
-                private void generateNext() {
-                    while (true) {
-                        Pair<Iterator, Integer> pair = null;
-                        for (int i = iterators.size() - 1; i >= 0; i--) {
-                            Pair<Iterator, Integer> current = iterators.get(i);
-                            if (current.first.hasNext()) {
-                                pair = current;
-                                break;
-                            } else {
-                                iterators.remove(i);
-                            }
-                        }
-                        if (pair == null) break;
-                        apply(iterators, pair.first.next(), pair.second, !pair.first.hasNext(), collector);
-                        if (!values.isEmpty()) break;
-                        if (iterators.isEmpty()) break;
-                    }
-                    if (values.isEmpty()) {
-                        gatherers.forEach(pair -> pair.first.onClose());
-                        collector.onClose();
-                    }
-                }
+        // The last gatherer of a pull based evaluation is the NOOP_GATHERER, which is neither optimized nor instrumented
+        private StreamableOptimizer optimizePull() {
+            StreamableOptimizer optimizer = new StreamableOptimizer(spliterator, gatherers, flat, size - 1, null);
+            if (StreamableOptimizer.ENABLED) optimizer.adaptive(adaptive).optimize();
+            gatherers[optimizer.size()] = NOOP_GATHERER;
+            flat[optimizer.size()] = false;
+            return optimizer;
+        }
 
-                {
-                    iterators.add(new Pair<>(iterator, 0));
-                    generateNext();
-                }
+        private void instrument(int size) {
+            if (metrics == null) return;
+            StreamableInstrumentation.instrument(StreamableMetrics.pipeline(metrics), gatherers, flat, size - 1, null);
+        }
 
-                @Override
-                public boolean hasNext() {
-                    return !values.isEmpty();
+        private Spliterator<?> spliterator() {
+            synchronized (lock) {
+                if (evaluated) {
+                    throw new IllegalStateException("Streamable is already evaluated");
                 }
+                evaluated = true;
+            }
 
-                @Override
-                public Object next() {
-                    Object temp = values.remove(0);
-                    if (values.isEmpty()) {
-                        generateNext();
-                    }
-                    return temp;
-                }
-            };
+            if (size == 1) {
+                return spliterator;
+            }
+            StreamableOptimizer optimizer = optimizePull();
+            Spliterator<?> spliterator = optimizer.source();
+            int size = optimizer.size() + 1;
+            int characteristics = optimizer.characteristics();
+            Comparator<?> comparator = optimizer.comparator();
+            instrument(size);
+            StreamableEvents.instrument("spliterator", gatherers, size, null);
+            return new StreamableSpliterator(spliterator, gatherers, flat, size, characteristics, comparator);
         }
     }
 
     protected static <T> Streamable<T> from(Iterator<T> stream) {
-        return from(new StreamData(stream), Streamable.class);
+        return from(Spliterators.spliteratorUnknownSize(stream, Spliterator.ORDERED));
+    }
+
+    protected static <T> Streamable<T> from(Spliterator<T> spliterator) {
+        return from(new StreamData(spliterator), Streamable.class);
+    }
+
+    protected static IntStreamable fromInts(Spliterator.OfInt spliterator) {
+        return new IntPipeline(spliterator);
+    }
+
+    protected static LongStreamable fromLongs(Spliterator.OfLong spliterator) {
+        return new LongPipeline(spliterator);
+    }
+
+    protected static DoubleStreamable fromDoubles(Spliterator.OfDouble spliterator) {
+        return new DoublePipeline(spliterator);
     }
 
     private static <T, S extends Streamable<T>> S from(StreamData streamData, Class<S> clazz) {
-        int layer = streamData.gatherers.size();
+        int layer = streamData.size;
         Object object = Proxy.newProxyInstance(StreamableManager.class.getClassLoader(), new Class[]{clazz}, (proxy, method, args) -> {
             if (method.getName().equals("toString") && method.getParameterCount() == 0) {
                 return clazz.getTypeName() + "@" + System.identityHashCode(proxy);
             }
-            if (layer != streamData.gatherers.size()) {
+            if (layer != streamData.size) {
                 throw new IllegalStateException("This Streamable is already mutated. You cannot add another operation on this instance.");
             }
             if (method.isDefault()) {
@@ -252,9 +234,13 @@ public class StreamableManager {
             // Methods of Iterable
             if (is(method, "iterator")) {
                 // Forcing a mutation so that subsequent calls will result in an IllegalStateException
-                streamData.gatherers.add(new Pair<>(NOOP_GATHERER, false));
+                streamData.add(NOOP_GATHERER, false);
                 return streamData.iterator();
             }
+            if (is(method, "spliterator")) {
+                streamData.add(NOOP_GATHERER, false);
+                return streamData.spliterator();
+            }
 
             // Methods of Streamable
             if (is(method, "as", Class.class)) {
@@ -263,13 +249,38 @@ public class StreamableManager {
                 return from(streamData, type);
             }
             if (is(method, "gather", StreamableGatherer.class)) {
-                streamData.gatherers.add(new Pair<>((StreamableGatherer) args[0], false));
+                streamData.add((StreamableGatherer) args[0], false);
                 return from(streamData, clazz);
             }
             if (is(method, "flatGather", StreamableGatherer.class)) {
-                streamData.gatherers.add(new Pair<>((StreamableGatherer) args[0], true));
+                streamData.add((StreamableGatherer) args[0], true);
+                return from(streamData, clazz);
+            }
+            if (is(method, "parallel")) {
+                streamData.parallel = true;
                 return from(streamData, clazz);
             }
+            if (is(method, "sequential")) {
+                streamData.parallel = false;
+                return from(streamData, clazz);
+            }
+            if (is(method, "adaptive")) {
+                streamData.adaptive = true;
+                return from(streamData, clazz);
+            }
+            if (is(method, "instrument", String.class)) {
+                streamData.metrics = (String) args[0];
+                return from(streamData, clazz);
+            }
+            if (is(method, "isParallel")) {
+                return streamData.parallel;
+            }
+            if (is(method, "explain")) {
+                return streamData.explain();
+            }
+            if (is(method, "profile", StreamableCollector.class)) {
+                return streamData.profile((StreamableCollector) args[0]);
+            }
             if (is(method, "collect", StreamableCollector.class)) {
                 return streamData.run((StreamableCollector) args[0]);
             }
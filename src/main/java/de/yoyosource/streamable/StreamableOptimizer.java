@@ -0,0 +1,231 @@
+package de.yoyosource.streamable;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+
+/**
+ * Rewrites the stages of a pipeline before it is evaluated, repeating the following rules until
+ * none of them applies anymore:
+ * <ul>
+ *     <li>filters are moved ahead of stateful {@link StreamableGatherer#SELECTING} gatherers like
+ *     distinct or sorted, so that they see fewer elements</li>
+ *     <li>adjacent gatherers are combined with {@link StreamableGatherer#fuse(StreamableGatherer)}</li>
+ *     <li>the last gatherer and the collector are combined with {@link StreamableGatherer#fuse(StreamableCollector)}</li>
+ *     <li>{@link StreamableGatherer#SIZE_PRESERVING} and {@link StreamableGatherer#SIDE_EFFECT_FREE}
+ *     gatherers in front of a {@link StreamableCollector#COUNTING} collector are removed</li>
+ *     <li>gatherers which are {@link StreamableGatherer#redundant(int, Comparator)} for the
+ *     characteristics of their input, like distinct on distinct elements, are removed</li>
+ *     <li>leading gatherers like skip and limit are applied to an {@link IndexedSource} with
+ *     {@link StreamableGatherer#slice(IndexedSource)}</li>
+ * </ul>
+ * In an {@link Streamable#adaptive()} pipeline consecutive filters are combined into a
+ * {@link StreamableAdaptiveFilter} instead of being fused.
+ * The optimizer can be disabled with {@code -Dstreamable.optimize=false}.
+ */
+final class StreamableOptimizer {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("streamable.optimize"));
+
+    private static final int FILTER = StreamableGatherer.STATELESS | StreamableGatherer.SIDE_EFFECT_FREE | StreamableGatherer.ORDER_PRESERVING | StreamableGatherer.SELECTING;
+    private static final int UNCOUNTED = StreamableGatherer.SIZE_PRESERVING | StreamableGatherer.SIDE_EFFECT_FREE;
+
+    private Spliterator<?> source;
+    private final StreamableGatherer<Object, Object>[] gatherers;
+    private final boolean[] flat;
+    private int size;
+    private StreamableCollector<Object, ?> collector;
+    private boolean adaptive;
+
+    /**
+     * Optimizes the first {@code size} gatherers in place.
+     *
+     * @param collector the collector of the pipeline or null for a pull based evaluation
+     */
+    StreamableOptimizer(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        this.source = source;
+        this.gatherers = gatherers;
+        this.flat = flat;
+        this.size = size;
+        this.collector = collector;
+    }
+
+    StreamableOptimizer adaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    StreamableOptimizer optimize() {
+        boolean changed = true;
+        while (changed) {
+            changed = pushFilters();
+            if (adaptive) changed |= groupFilters();
+            changed |= fuseGatherers();
+            changed |= fuseCollector();
+            changed |= removeUncounted();
+            changed |= removeRedundant();
+            changed |= sliceSource();
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of gatherers after the optimization
+     */
+    int size() {
+        return size;
+    }
+
+    StreamableCollector<Object, ?> collector() {
+        return collector;
+    }
+
+    /**
+     * @return the source to evaluate, which is the sliced source if gatherers were applied to it
+     */
+    Spliterator<?> source() {
+        return source;
+    }
+
+    private static Comparator<?> sourceComparator(Spliterator<?> source) {
+        return source.hasCharacteristics(Spliterator.SORTED) ? source.getComparator() : null;
+    }
+
+    /**
+     * @return the {@link Spliterator} characteristics of the output of the gatherers
+     */
+    int characteristics() {
+        int characteristics = source.characteristics();
+        for (int i = 0; i < size; i++) {
+            characteristics = gatherers[i].characteristics(characteristics);
+        }
+        return characteristics;
+    }
+
+    /**
+     * @return the comparator of the output of the gatherers if it is SORTED, null for the natural order
+     */
+    Comparator<?> comparator() {
+        Comparator<?> comparator = sourceComparator(source);
+        for (int i = 0; i < size; i++) {
+            comparator = gatherers[i].comparator(comparator);
+        }
+        return comparator;
+    }
+
+    /**
+     * @return the number of elements the gatherers pass on or -1 if it is not known in advance
+     */
+    long exactSize() {
+        return (characteristics() & Spliterator.SIZED) != 0 ? source.getExactSizeIfKnown() : -1;
+    }
+
+    private static boolean isFilter(StreamableGatherer<Object, Object> gatherer) {
+        return gatherer instanceof StreamableAdaptiveFilter || (gatherer.flags() & (FILTER | StreamableGatherer.SHORT_CIRCUIT)) == FILTER;
+    }
+
+    private boolean pushFilters() {
+        boolean changed = false;
+        for (int i = 0; i + 1 < size; i++) {
+            if (flat[i + 1] || !isFilter(gatherers[i + 1])) continue;
+            int flags = gatherers[i].flags();
+            if ((flags & (StreamableGatherer.SELECTING | StreamableGatherer.STATELESS | StreamableGatherer.SHORT_CIRCUIT)) != StreamableGatherer.SELECTING) continue;
+
+            StreamableGatherer<Object, Object> filter = gatherers[i + 1];
+            gatherers[i + 1] = gatherers[i];
+            flat[i + 1] = flat[i];
+            gatherers[i] = filter;
+            flat[i] = false;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean groupFilters() {
+        boolean changed = false;
+        int i = 0;
+        while (i + 1 < size) {
+            if (flat[i] || flat[i + 1] || !isFilter(gatherers[i]) || !isFilter(gatherers[i + 1])) {
+                i++;
+                continue;
+            }
+            gatherers[i] = StreamableAdaptiveFilter.of(gatherers[i], gatherers[i + 1]);
+            remove(i + 1);
+            changed = true;
+        }
+        return changed;
+    }
+
+    @SuppressWarnings("unchecked") // The stages are typed as Object, the fused gatherer takes the place of both
+    private boolean fuseGatherers() {
+        boolean changed = false;
+        int i = 0;
+        while (i + 1 < size) {
+            StreamableGatherer<Object, Object> fused = flat[i + 1] ? null : (StreamableGatherer<Object, Object>) gatherers[i].fuse(gatherers[i + 1]);
+            if (fused == null) {
+                i++;
+                continue;
+            }
+            gatherers[i] = fused;
+            remove(i + 1);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean fuseCollector() {
+        if (collector == null || size == 0) return false;
+        StreamableCollector<Object, ?> fused = gatherers[size - 1].fuse(collector);
+        if (fused == null) return false;
+        collector = fused;
+        remove(size - 1);
+        return true;
+    }
+
+    private boolean removeUncounted() {
+        if (collector == null || (collector.flags() & StreamableCollector.COUNTING) == 0) return false;
+        boolean changed = false;
+        while (size > 0 && (gatherers[size - 1].flags() & (UNCOUNTED | StreamableGatherer.SHORT_CIRCUIT)) == UNCOUNTED) {
+            remove(size - 1);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeRedundant() {
+        boolean changed = false;
+        int characteristics = source.characteristics();
+        Comparator<?> comparator = sourceComparator(source);
+        int i = 0;
+        while (i < size) {
+            StreamableGatherer<Object, Object> gatherer = gatherers[i];
+            if (gatherer.redundant(characteristics, comparator)) {
+                remove(i);
+                changed = true;
+                continue;
+            }
+            comparator = gatherer.comparator(comparator);
+            characteristics = gatherer.characteristics(characteristics);
+            i++;
+        }
+        return changed;
+    }
+
+    private boolean sliceSource() {
+        boolean changed = false;
+        while (size > 0 && !flat[0] && source instanceof IndexedSource) {
+            Spliterator<?> sliced = gatherers[0].slice((IndexedSource) source);
+            if (sliced == null) break;
+            source = sliced;
+            remove(0);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void remove(int index) {
+        System.arraycopy(gatherers, index + 1, gatherers, index, size - index - 1);
+        System.arraycopy(flat, index + 1, flat, index, size - index - 1);
+        size--;
+        gatherers[size] = null;
+    }
+}
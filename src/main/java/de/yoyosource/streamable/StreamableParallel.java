@@ -0,0 +1,156 @@
+package de.yoyosource.streamable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel evaluation of a pipeline on the common {@link ForkJoinPool}.
+ * <p>
+ * The gatherers are split into segments. A segment of {@link StreamableGatherer#STATELESS}
+ * gatherers is applied to every part of the split source concurrently, sharing the gatherer
+ * instances. Every other gatherer is a barrier: its input is buffered in encounter order and the
+ * gatherer runs sequentially over it, so that for example {@code sorted}, {@code limit} and
+ * {@code scan} see exactly the elements they would see in a sequential evaluation. The collector
+ * runs in parallel if it supports {@link StreamableCollector#split()}, also over the buffered output
+ * of a trailing barrier, otherwise it runs sequentially after the last segment.
+ * <p>
+ * Only a SIZED source is split, and only if no {@link StreamableGatherer#SHORT_CIRCUIT} stage or
+ * collector follows, as the source could be infinite or far larger than what is needed. The stages up
+ * to the last short-circuiting gatherer run sequentially, the rest runs in parallel over their
+ * buffered output, so that for example a {@code limit} of an infinite source is parallel after it.
+ */
+final class StreamableParallel {
+
+    private StreamableParallel() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static Object run(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        try {
+            return evaluate(source, gatherers, flat, size, collector);
+        } finally {
+            for (int i = 0; i < size; i++) {
+                gatherers[i].onClose();
+            }
+            collector.onClose();
+        }
+    }
+
+    private static Object evaluate(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        Spliterator<?> current = source;
+        int index = 0;
+        while (true) {
+            int shortCircuit = index;
+            while (shortCircuit < size && (gatherers[shortCircuit].flags() & StreamableGatherer.SHORT_CIRCUIT) == 0) shortCircuit++;
+            if (shortCircuit < size) {
+                // Buffering the input of a short-circuiting stage could take the whole, maybe infinite, source
+                current = ((List<?>) pipeline(current, gatherers, flat, index, shortCircuit + 1, new BufferCollector()).evaluate()).spliterator();
+                index = shortCircuit + 1;
+                continue;
+            }
+            if ((collector.flags() & StreamableCollector.SHORT_CIRCUIT) != 0 || !current.hasCharacteristics(Spliterator.SIZED)) {
+                return pipeline(current, gatherers, flat, index, size, collector).evaluate();
+            }
+
+            int stateless = index;
+            while (stateless < size && (gatherers[stateless].flags() & StreamableGatherer.STATELESS) != 0) stateless++;
+
+            if (stateless == size && collector.split() != null) {
+                return fork(current, gatherers, flat, index, size, collector);
+            }
+            if (stateless > index) {
+                current = fork(current, gatherers, flat, index, stateless, new BufferCollector()).spliterator();
+            }
+
+            int barrier = stateless;
+            while (barrier < size && (gatherers[barrier].flags() & StreamableGatherer.STATELESS) == 0) barrier++;
+
+            if (barrier == size && collector.split() == null) {
+                return pipeline(current, gatherers, flat, stateless, size, collector).evaluate();
+            }
+            // The output of the last barrier is buffered as well, so that the collector runs in parallel over it
+            current = ((List<?>) pipeline(current, gatherers, flat, stateless, barrier, new BufferCollector()).evaluate()).spliterator();
+            index = barrier;
+        }
+    }
+
+    private static StreamablePipeline pipeline(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int from, int to, StreamableCollector<Object, ?> collector) {
+        return new StreamablePipeline(source, Arrays.copyOfRange(gatherers, from, to), Arrays.copyOfRange(flat, from, to), to - from, collector);
+    }
+
+    private static <R> R fork(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int from, int to, StreamableCollector<Object, R> collector) {
+        long size = source.estimateSize();
+        long threshold = size == Long.MAX_VALUE ? 1 : Math.max(1, size / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+        Task<R> task = new Task<>(source, threshold, Arrays.copyOfRange(gatherers, from, to), Arrays.copyOfRange(flat, from, to), collector);
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private static final class Task<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<?> spliterator;
+        private final long threshold;
+        private final StreamableGatherer<Object, Object>[] gatherers;
+        private final boolean[] flat;
+        private final StreamableCollector<Object, R> collector;
+
+        private Task(Spliterator<?> spliterator, long threshold, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, StreamableCollector<Object, R> collector) {
+            this.spliterator = spliterator;
+            this.threshold = threshold;
+            this.gatherers = gatherers;
+            this.flat = flat;
+            this.collector = collector;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The pipeline returns the result of its collector
+        protected R compute() {
+            Spliterator<?> left;
+            if (spliterator.estimateSize() > threshold && (left = spliterator.trySplit()) != null) {
+                Task<R> leftTask = new Task<>(left, threshold, gatherers, flat, collector);
+                Task<R> rightTask = new Task<>(spliterator, threshold, gatherers, flat, collector);
+                leftTask.fork();
+                R right = rightTask.compute();
+                return collector.combine(leftTask.join(), right);
+            }
+
+            StreamableCollector<Object, R> part = collector.split();
+            try {
+                return (R) new StreamablePipeline(spliterator, StreamableStages.split(gatherers), flat, gatherers.length, part).evaluate();
+            } finally {
+                part.onClose();
+            }
+        }
+    }
+
+    private static final class BufferCollector implements StreamableCollector<Object, List<Object>> {
+        private final List<Object> elements = new ArrayList<>();
+
+        @Override
+        public boolean apply(Object input) {
+            elements.add(input);
+            return false;
+        }
+
+        @Override
+        public List<Object> finish() {
+            return elements;
+        }
+
+        @Override
+        public StreamableCollector<Object, List<Object>> split() {
+            return new BufferCollector();
+        }
+
+        @Override
+        public List<Object> combine(List<Object> left, List<Object> right) {
+            left.addAll(right);
+            return left;
+        }
+    }
+}
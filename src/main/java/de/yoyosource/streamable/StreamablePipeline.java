@@ -0,0 +1,403 @@
+package de.yoyosource.streamable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A gatherer chain compiled into a fixed set of push sinks. Every stage gets its own sink instance
+ * which is created once per evaluation, stages and pending iterators are kept in flat arrays and
+ * short-circuiting is tracked in plain fields, so no objects are allocated per element or per stage.
+ * <p>
+ * The sink classes are not used directly. For every pipeline shape a hidden copy of the template
+ * class is defined and cached, so that every position in every pipeline has its own call sites
+ * for {@link StreamableGatherer#apply(Object, Consumer)} and the JIT only ever sees one receiver
+ * type there. Running with {@code -Dstreamable.compile=false} interprets the pipeline with the
+ * shared template classes instead.
+ */
+final class StreamablePipeline {
+
+    private static volatile boolean hiddenClassesAvailable = !"false".equals(System.getProperty("streamable.compile"));
+
+    /**
+     * Stage class to (downstream class to constructor of the generated sink). The downstream class
+     * is part of the key, so that every distinct chain of stages results in a distinct chain of
+     * generated classes.
+     */
+    private static final ClassValue<Map<Class<?>, MethodHandle>> SHAPES = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    abstract static class Sink implements Consumer<Object> {
+        StreamablePipeline pipeline;
+        int index;
+        boolean done;
+        StreamableGatherer<Object, Object> gatherer;
+        StreamableCollector<Object, ?> collector;
+        Consumer<Object> downstream;
+    }
+
+    static final class GatherSink extends Sink {
+        @Override
+        public void accept(Object o) {
+            if (done) return;
+            if (gatherer.apply(o, downstream)) pipeline.cancel(index);
+        }
+    }
+
+    static final class CollectSink extends Sink {
+        @Override
+        public void accept(Object o) {
+            if (done) return;
+            if (collector.apply(o)) pipeline.cancel(index);
+        }
+    }
+
+    static final class FlatSink extends Sink {
+        @Override
+        public void accept(Object o) {
+            if (done) return;
+            pipeline.push(((Iterable) o).iterator(), index);
+        }
+    }
+
+    abstract static class Loop {
+        abstract void drain(StreamablePipeline pipeline, Spliterator<?> source, Sink head);
+    }
+
+    static final class SourceLoop extends Loop {
+        @Override
+        void drain(StreamablePipeline pipeline, Spliterator<?> source, Sink head) {
+            while (pipeline.depth == 0 && !head.done) {
+                if (!source.tryAdvance(head)) break;
+            }
+        }
+    }
+
+    private final Spliterator<?> source;
+    private final StreamableGatherer<Object, Object>[] gatherers;
+    private final StreamableCollector<Object, ?> collector;
+
+    // 'entries[i]' accepts the input of stage i, 'entries[gatherers.length]' is the collector
+    private final Sink[] entries;
+    // 'pushers[i]' is the downstream of a flat stage i - 1 which pushes iterators targeting stage i
+    private final Sink[] pushers;
+    private final Loop loop;
+
+    private Iterator<?>[] iterators = new Iterator<?>[8];
+    private int[] targets = new int[8];
+    int depth;
+
+    private boolean sourceDone;
+    private int finished;
+
+    StreamablePipeline(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<Object, ?> collector) {
+        this.source = source;
+        this.gatherers = Arrays.copyOf(gatherers, size);
+        this.collector = collector;
+
+        entries = new Sink[size + 1];
+        pushers = new Sink[size + 1];
+
+        Sink collectSink = sink(CollectSink.class, collector.getClass(), CollectSink.class);
+        collectSink.collector = collector;
+        bind(collectSink, size);
+
+        for (int i = size - 1; i >= 0; i--) {
+            Consumer<Object> downstream;
+            if (flat[i]) {
+                Sink flatSink = new FlatSink();
+                bind(flatSink, i + 1);
+                pushers[i + 1] = flatSink;
+                downstream = flatSink;
+            } else {
+                downstream = entries[i + 1];
+            }
+
+            Sink gatherSink = sink(GatherSink.class, this.gatherers[i].getClass(), downstream.getClass());
+            gatherSink.gatherer = this.gatherers[i];
+            gatherSink.downstream = downstream;
+            bind(gatherSink, i);
+        }
+        loop = loop(entries[0].getClass(), source.getClass());
+    }
+
+    private void bind(Sink sink, int index) {
+        sink.pipeline = this;
+        sink.index = index;
+        if (sink instanceof FlatSink) return;
+        entries[index] = sink;
+    }
+
+    void cancel(int index) {
+        for (int i = 0; i <= index; i++) {
+            entries[i].done = true;
+            if (pushers[i] != null) pushers[i].done = true;
+        }
+        if (finished < index) finished = index;
+    }
+
+    void push(Iterator<?> iterator, int target) {
+        if (depth == iterators.length) {
+            iterators = Arrays.copyOf(iterators, depth * 2);
+            targets = Arrays.copyOf(targets, depth * 2);
+        }
+        iterators[depth] = iterator;
+        targets[depth] = target;
+        depth++;
+    }
+
+    /**
+     * Runs one unit of work, which is either one element taken from the source or a pending
+     * iterator or the finish of one stage.
+     *
+     * @return false if the pipeline has nothing left to do
+     */
+    boolean step() {
+        while (depth > 0) {
+            int top = depth - 1;
+            Iterator<?> current = iterators[top];
+            int target = targets[top];
+            if (entries[target].done || !current.hasNext()) {
+                iterators[top] = null;
+                depth--;
+                continue;
+            }
+            accept(entries[target], current.next());
+            return true;
+        }
+
+        if (!sourceDone) {
+            int base = depth;
+            if (!entries[0].done && source.tryAdvance(entries[0])) {
+                reverse(base);
+                return true;
+            }
+            sourceDone = true;
+        }
+
+        if (finished < gatherers.length) {
+            int index = finished++;
+            int base = depth;
+            gatherers[index].finish(entries[index].downstream);
+            reverse(base);
+            return true;
+        }
+        return false;
+    }
+
+    private void accept(Sink sink, Object o) {
+        int base = depth;
+        sink.accept(o);
+        reverse(base);
+    }
+
+    // Iterators pushed by one call are pushed in order of their creation, but have to be taken from the top in the same order.
+    private void reverse(int base) {
+        for (int i = base, j = depth - 1; i < j; i++, j--) {
+            Iterator<?> iterator = iterators[i];
+            iterators[i] = iterators[j];
+            iterators[j] = iterator;
+            int target = targets[i];
+            targets[i] = targets[j];
+            targets[j] = target;
+        }
+    }
+
+    Object run() {
+        try {
+            return evaluate();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Runs the pipeline to completion without calling {@link #close()}, which is used by parallel
+     * evaluations sharing their stateless gatherers between multiple pipelines.
+     */
+    Object evaluate() {
+        do {
+            if (depth == 0 && !sourceDone) {
+                loop.drain(this, source, entries[0]);
+                reverse(0);
+            }
+        } while (step());
+
+        return collector.finish();
+    }
+
+    /**
+     * @return true if neither the source nor a pending iterator can produce elements anymore, because the stages
+     * they feed were cancelled, so that only the finish of the stages is left
+     */
+    boolean draining() {
+        if (!sourceDone && !entries[0].done) return false;
+        for (int i = 0; i < depth; i++) {
+            if (!entries[targets[i]].done) return false;
+        }
+        return true;
+    }
+
+    void close() {
+        for (StreamableGatherer<Object, Object> gatherer : gatherers) {
+            gatherer.onClose();
+        }
+        collector.onClose();
+    }
+
+    private static Sink sink(Class<? extends Sink> template, Class<?> stage, Class<?> downstream) {
+        try {
+            return (Sink) constructor(template, stage, downstream).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Loop loop(Class<?> head, Class<?> source) {
+        try {
+            return (Loop) constructor(SourceLoop.class, head, source).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> template, Class<?> stage, Class<?> key) throws ReflectiveOperationException {
+        if (hiddenClassesAvailable) {
+            MethodHandle handle = SHAPES.get(stage).get(key);
+            if (handle != null) return handle;
+            try {
+                handle = define(template);
+                MethodHandle existing = SHAPES.get(stage).putIfAbsent(key, handle);
+                return existing != null ? existing : handle;
+            } catch (IOException | LinkageError | ReflectiveOperationException | SecurityException e) {
+                // Fall back to the shared template classes if hidden classes cannot be defined in this environment
+                hiddenClassesAvailable = false;
+            }
+        }
+        return MethodHandles.lookup().findConstructor(template, MethodType.methodType(void.class));
+    }
+
+    private static MethodHandle define(Class<?> template) throws IOException, ReflectiveOperationException {
+        String resource = template.getName().substring(template.getPackageName().length() + 1) + ".class";
+        byte[] bytes;
+        try (InputStream inputStream = template.getResourceAsStream(resource)) {
+            if (inputStream == null) throw new IOException("Could not read " + resource);
+            bytes = inputStream.readAllBytes();
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+    }
+
+    /**
+     * Pull based evaluation of the pipeline. The pipeline is resumed with {@link #step()} only when
+     * all previously produced elements were taken, so at most the output of a single step is held
+     * in a ring buffer. Elements of a flatGather are produced one at a time, which keeps even huge
+     * fan-outs in constant memory. The pipeline is closed once it is exhausted, if a stage throws, and
+     * right after the last element of a pipeline that was cut short, like by a limit, so that a caller
+     * which stops iterating there does not keep the resources of the stages open.
+     */
+    static final class Pull implements Iterator<Object> {
+        private Object[] values = new Object[16];
+        private int head;
+        private int count;
+
+        private final StreamablePipeline pipeline;
+        private final Runnable onClose;
+        private boolean closed;
+
+        /**
+         * @param onClose replaces {@link StreamablePipeline#close()} once the pipeline is exhausted, if not null
+         */
+        Pull(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, Runnable onClose) {
+            pipeline = new StreamablePipeline(source, gatherers, flat, size, new StreamableCollector<Object, Object>() {
+                @Override
+                public boolean apply(Object input) {
+                    offer(input);
+                    return false;
+                }
+
+                @Override
+                public Object finish() {
+                    return null;
+                }
+            });
+            this.onClose = onClose != null ? onClose : pipeline::close;
+        }
+
+        private void offer(Object value) {
+            if (count == values.length) {
+                Object[] resized = new Object[values.length * 2];
+                for (int i = 0; i < count; i++) {
+                    resized[i] = values[(head + i) & (values.length - 1)];
+                }
+                values = resized;
+                head = 0;
+            }
+            values[(head + count) & (values.length - 1)] = value;
+            count++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (count == 0) {
+                    if (!pipeline.step()) break;
+                }
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+            if (count == 0) close();
+            return count != 0;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Object> action) {
+            try {
+                while (hasNext()) {
+                    action.accept(next());
+                }
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            onClose.run();
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object value = values[head];
+            values[head] = null;
+            head = (head + 1) & (values.length - 1);
+            count--;
+            // Only the finish of the stages is left, which is cheap enough to find out if this was the last element
+            if (count == 0 && pipeline.draining()) hasNext();
+            return value;
+        }
+    }
+}
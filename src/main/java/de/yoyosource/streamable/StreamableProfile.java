@@ -0,0 +1,119 @@
+package de.yoyosource.streamable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of {@link Streamable#profile(StreamableCollector)} together with the measurements of
+ * every stage. The last stage is the collector. Times and allocations are the self cost of a stage,
+ * which excludes everything its downstream stages did with its output. Measurements the JVM does
+ * not support are reported as -1.
+ *
+ * @param <R> the result type of the collector
+ */
+public final class StreamableProfile<R> {
+
+    private final R result;
+    private final List<Stage> stages;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    StreamableProfile(R result, List<Stage> stages, long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.result = result;
+        this.stages = Collections.unmodifiableList(stages);
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public R getResult() {
+        return result;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return the wall time of the whole evaluation, including the source and the profiling overhead
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-5s %-24s %12s %12s %14s %14s %14s", "stage", "operator", "in", "out", "wall ns", "cpu ns", "alloc bytes"));
+        for (Stage stage : stages) {
+            builder.append(System.lineSeparator()).append(stage);
+        }
+        builder.append(System.lineSeparator()).append(String.format("%-5s %-24s %12s %12s %14d %14d %14d", "", "total", "", "", wallNanos, cpuNanos, allocatedBytes));
+        return builder.toString();
+    }
+
+    public static final class Stage {
+        private final int index;
+        private final String operator;
+        private final long elementsIn;
+        private final long elementsOut;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        Stage(int index, String operator, long elementsIn, long elementsOut, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.index = index;
+            this.operator = operator;
+            this.elementsIn = elementsIn;
+            this.elementsOut = elementsOut;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public long getElementsIn() {
+            return elementsIn;
+        }
+
+        /**
+         * @return the elements passed on by this stage, always 0 for the collector
+         */
+        public long getElementsOut() {
+            return elementsOut;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-5d %-24s %12d %12d %14d %14d %14d", index, operator, elementsIn, elementsOut, wallNanos, cpuNanos, allocatedBytes);
+        }
+    }
+}
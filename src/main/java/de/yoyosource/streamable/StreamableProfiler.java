@@ -0,0 +1,116 @@
+package de.yoyosource.streamable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+
+/**
+ * Evaluates a pipeline for {@link Streamable#profile(StreamableCollector)}. Every stage is wrapped
+ * to read the wall clock, the CPU time and the allocated bytes of the current thread around each
+ * call, which costs far more than the stages themselves, so the profiled pipeline always runs
+ * sequentially and element by element.
+ */
+final class StreamableProfiler {
+
+    private StreamableProfiler() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+    private static com.sun.management.ThreadMXBean allocations() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) return null;
+        return threads;
+    }
+
+    private static long cpu() {
+        return CPU ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocated() {
+        return ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    @SuppressWarnings("unchecked") // The pipeline returns the result of its collector
+    static <R> StreamableProfile<R> profile(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, StreamableCollector<?, R> collector) {
+        Stage[] stages = new Stage[size + 1];
+        for (int i = 0; i < size; i++) {
+            stages[i] = new Stage(StreamableStages.operator(gatherers[i]));
+            gatherers[i] = StreamableStages.wrap(gatherers[i], flat[i], new ProfileProbe(stages[i]));
+        }
+        stages[size] = new Stage(StreamableStages.operator(collector));
+        StreamableCollector<Object, Object> profiledCollector = StreamableStages.wrap((StreamableCollector<Object, Object>) collector, new ProfileProbe(stages[size]));
+
+        long wall = System.nanoTime();
+        long cpu = cpu();
+        long allocated = allocated();
+        R result = (R) new StreamablePipeline(source, gatherers, flat, size, profiledCollector).run();
+        wall = System.nanoTime() - wall;
+        cpu = cpu() - cpu;
+        allocated = allocated() - allocated;
+
+        List<StreamableProfile.Stage> profiled = new ArrayList<>(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            Stage stage = stages[i];
+            profiled.add(new StreamableProfile.Stage(i, stage.operator, stage.in, stage.out,
+                    stage.wall, CPU ? stage.cpu : -1, ALLOCATIONS != null ? stage.allocated : -1));
+        }
+        return new StreamableProfile<>(result, profiled, wall, CPU ? cpu : -1, ALLOCATIONS != null ? allocated : -1);
+    }
+
+    private static final class Stage {
+        private final String operator;
+        private long in;
+        private long out;
+        private long wall;
+        private long cpu;
+        private long allocated;
+
+        private Stage(String operator) {
+            this.operator = operator;
+        }
+    }
+
+    /**
+     * Adds the calls of one stage to its {@link Stage}, timed by the wall clock, the CPU time and the
+     * allocated bytes of the current thread.
+     */
+    private static final class ProfileProbe extends StreamableStages.Probe {
+        private final Stage stage;
+
+        private ProfileProbe(Stage stage) {
+            super(3, true);
+            this.stage = stage;
+        }
+
+        @Override
+        void read(long[] values) {
+            values[0] = System.nanoTime();
+            values[1] = cpu();
+            values[2] = allocated();
+        }
+
+        @Override
+        void time(long[] elapsed) {
+            stage.wall += elapsed[0];
+            stage.cpu += elapsed[1];
+            stage.allocated += elapsed[2];
+        }
+
+        @Override
+        void in(long count) {
+            stage.in += count;
+        }
+
+        @Override
+        void out(long count) {
+            stage.out += count;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.yoyosource.streamable;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the output of a pipeline. If every gatherer is
+ * {@link StreamableGatherer#STATELESS} the source itself is split and every part gets its own
+ * pipeline sharing the gatherers, otherwise elements are taken from the pipeline in growing batches
+ * like {@link Spliterators.AbstractSpliterator} does. If the gatherers keep the size of a SIZED
+ * source, the elements left are counted down from the size of the source, so that the size stays
+ * exact after elements were taken.
+ */
+final class StreamableSpliterator implements Spliterator<Object> {
+
+    private static final int BATCH_UNIT = 1 << 10;
+    private static final int MAX_BATCH = 1 << 25;
+
+    private final Spliterator<?> source;
+    private final StreamableGatherer<Object, Object>[] gatherers;
+    private final boolean[] flat;
+    private final int size;
+    // Number of parts created by splitting the source that are not exhausted yet, the gatherers are closed once all parts are exhausted
+    private final AtomicInteger open;
+    private final int characteristics;
+    private final Comparator<?> comparator;
+
+    private Iterator<Object> pull;
+    private int batch;
+    // The exact number of elements left once the pipeline is pulled from, if the output is SIZED
+    private long remaining;
+
+    /**
+     * @param characteristics the characteristics of the output of the gatherers
+     * @param comparator the comparator of a SORTED output
+     */
+    StreamableSpliterator(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, int characteristics, Comparator<?> comparator) {
+        this(source, gatherers, flat, size, new AtomicInteger(1), characteristics, comparator);
+    }
+
+    private StreamableSpliterator(Spliterator<?> source, StreamableGatherer<Object, Object>[] gatherers, boolean[] flat, int size, AtomicInteger open, int characteristics, Comparator<?> comparator) {
+        this.source = source;
+        this.gatherers = gatherers;
+        this.flat = flat;
+        this.size = size;
+        this.open = open;
+        this.characteristics = characteristics & (ORDERED | DISTINCT | SORTED | NONNULL | SIZED | SUBSIZED);
+        this.comparator = comparator;
+    }
+
+    private void close() {
+        if (open.decrementAndGet() != 0) return;
+        for (int i = 0; i < size; i++) {
+            gatherers[i].onClose();
+        }
+    }
+
+    private Iterator<Object> pull() {
+        if (pull == null) {
+            remaining = source.getExactSizeIfKnown();
+            pull = new StreamablePipeline.Pull(source, gatherers, flat, size, this::close);
+        }
+        return pull;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        Iterator<Object> iterator = pull();
+        if (!iterator.hasNext()) return false;
+        remaining--;
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Object> action) {
+        // The pipeline is closed as well if the action throws
+        pull().forEachRemaining(action);
+        remaining = 0;
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+        if (pull == null && isStateless()) {
+            Spliterator<?> prefix = source.trySplit();
+            if (prefix != null) {
+                open.incrementAndGet();
+                return new StreamableSpliterator(prefix, gatherers, flat, size, open, characteristics, comparator);
+            }
+        }
+
+        int length = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+        Object[] elements = new Object[length];
+        int count = 0;
+        Iterator<Object> iterator = pull();
+        while (count < length && iterator.hasNext()) {
+            elements[count++] = iterator.next();
+        }
+        if (count == 0) return null;
+        batch = count;
+        remaining -= count;
+        // An array spliterator reports the natural order for SORTED, so a custom order is not reported at all
+        return Spliterators.spliterator(elements, 0, count, comparator == null ? characteristics : characteristics & ~SORTED);
+    }
+
+    private boolean isStateless() {
+        for (int i = 0; i < size; i++) {
+            if ((gatherers[i].flags() & StreamableGatherer.STATELESS) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public long estimateSize() {
+        if ((characteristics & SIZED) == 0 || pull == null) return source.estimateSize();
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // A sorted source reports a comparator of its elements
+    public Comparator<? super Object> getComparator() {
+        if ((characteristics & SORTED) == 0) throw new IllegalStateException();
+        return (Comparator<? super Object>) comparator;
+    }
+}
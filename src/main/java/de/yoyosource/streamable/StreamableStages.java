@@ -0,0 +1,489 @@
+package de.yoyosource.streamable;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * The stage wrapping layer shared by {@link StreamableInstrumentation}, {@link StreamableEvents} and
+ * {@link StreamableProfiler}. A wrapped stage counts the elements it takes and emits and times its
+ * calls without the time spent downstream, and reports both to its {@link Probe}, which decides what
+ * is measured and where it is recorded.
+ */
+final class StreamableStages {
+
+    private StreamableStages() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * The calls of a stage a {@link Probe} is notified about.
+     */
+    enum Phase {
+        APPLY,
+        BATCH,
+        FINISH,
+        CLOSE
+    }
+
+    /**
+     * Receives what a wrapped stage does. The probe of a gatherer shared by the parts of a parallel
+     * evaluation is called concurrently.
+     */
+    abstract static class Probe {
+        // Number of clocks read by read, the calls of a stage are only timed if there are any
+        private final int clocks;
+        // Whether the output of the stage is counted
+        private final boolean output;
+
+        Probe(int clocks, boolean output) {
+            this.clocks = clocks;
+            this.output = output;
+        }
+
+        /**
+         * Reads the current value of every clock into {@code values}.
+         */
+        void read(long[] values) {
+        }
+
+        /**
+         * @param elapsed the time of one call of the stage per clock, without its downstream
+         */
+        void time(long[] elapsed) {
+        }
+
+        void in(long count) {
+        }
+
+        void out(long count) {
+        }
+
+        /**
+         * @param buffered the elements the stage holds back, or the iterators of a flatGather that are not exhausted yet
+         */
+        void buffered(long buffered) {
+        }
+
+        void shortCircuit() {
+        }
+
+        /**
+         * Called before every call of the stage, the result is passed to {@link #after(Phase, Object)}
+         * once the call returned or threw.
+         */
+        Object before(Phase phase) {
+            return null;
+        }
+
+        void after(Phase phase, Object state) {
+        }
+
+        /**
+         * @return the probe of a part of the collector split off for a parallel evaluation
+         */
+        Probe split() {
+            return this;
+        }
+    }
+
+    static StreamableGatherer<Object, Object> wrap(StreamableGatherer<Object, Object> gatherer, boolean flat, Probe probe) {
+        return new Gatherer(gatherer, flat, probe);
+    }
+
+    static <R> StreamableCollector<Object, R> wrap(StreamableCollector<Object, R> collector, Probe probe) {
+        return new Collector<>(collector, probe);
+    }
+
+    /**
+     * @return the gatherers for one part of a parallel evaluation, in which every wrapped gatherer is
+     * copied, so that the parts running concurrently do not share the output of a stage
+     */
+    static StreamableGatherer<Object, Object>[] split(StreamableGatherer<Object, Object>[] gatherers) {
+        StreamableGatherer<Object, Object>[] split = null;
+        for (int i = 0; i < gatherers.length; i++) {
+            if (!(gatherers[i] instanceof Gatherer)) continue;
+            if (split == null) split = gatherers.clone();
+            split[i] = ((Gatherer) gatherers[i]).split();
+        }
+        return split == null ? gatherers : split;
+    }
+
+    /**
+     * @return the name of the stage if its class declares {@link Object#toString()}, otherwise the
+     * name of the method that created the stage, which is the operator for all stages of this library
+     */
+    static String operator(Object stage) {
+        Class<?> type = stage.getClass();
+        try {
+            if (type.getMethod("toString").getDeclaringClass() != Object.class) return stage.toString();
+        } catch (NoSuchMethodException e) {
+            // Every class has a toString method
+        }
+        Method method = type.getEnclosingMethod();
+        if (method != null) return method.getName();
+        String name = type.getSimpleName();
+        return name.isEmpty() ? type.getName() : name;
+    }
+
+    /**
+     * Reads the clocks of a probe around one call. Used by one thread at a time.
+     */
+    private static final class Timer {
+        private final Probe probe;
+        private final long[] start;
+        private final long[] elapsed;
+
+        private Timer(Probe probe) {
+            this.probe = probe;
+            this.start = new long[probe.clocks];
+            this.elapsed = new long[probe.clocks];
+        }
+
+        private static Timer of(Probe probe) {
+            return probe.clocks == 0 ? null : new Timer(probe);
+        }
+
+        private void begin() {
+            probe.read(start);
+        }
+
+        private long[] end() {
+            probe.read(elapsed);
+            for (int i = 0; i < elapsed.length; i++) {
+                elapsed[i] -= start[i];
+            }
+            return elapsed;
+        }
+    }
+
+    /**
+     * The downstream of one stage in one pipeline, which counts the output of the stage and the time
+     * spent downstream, so that it can be excluded from the time of the stage.
+     */
+    private static final class Output implements BatchSink<Object> {
+        private final Consumer<Object> next;
+        private final Probe probe;
+        private final boolean flat;
+        private final Timer timer;
+        // Timer of the iterators emitted by a flatGather, which run inside of the calls timed by 'timer'
+        private final Timer iteratorTimer;
+        private final long[] downstream;
+        // Iterators of a flatGather that were emitted but are not exhausted yet
+        private long pending;
+
+        private Output(Consumer<Object> next, Probe probe, boolean flat) {
+            this.next = next;
+            this.probe = probe;
+            this.flat = flat;
+            this.timer = Timer.of(probe);
+            this.iteratorTimer = flat ? Timer.of(probe) : null;
+            this.downstream = new long[probe.clocks];
+        }
+
+        private void begin() {
+            if (timer != null) timer.begin();
+        }
+
+        private void end() {
+            if (timer == null) return;
+            long[] elapsed = timer.end();
+            for (int i = 0; i < elapsed.length; i++) {
+                downstream[i] += elapsed[i];
+            }
+        }
+
+        @Override
+        public void accept(Object o) {
+            begin();
+            if (flat) {
+                pending++;
+                probe.buffered(pending);
+                next.accept(new OutputIterable((Iterable<?>) o, this));
+            } else {
+                probe.out(1);
+                next.accept(o);
+            }
+            end();
+        }
+
+        @Override
+        public void acceptAll(Object[] elements, int length) {
+            if (flat || !(next instanceof BatchSink)) {
+                BatchSink.super.acceptAll(elements, length);
+                return;
+            }
+            begin();
+            probe.out(length);
+            ((BatchSink<Object>) next).acceptAll(elements, length);
+            end();
+        }
+    }
+
+    /**
+     * An element emitted by a flatGather, which is iterated by the pipeline and not by the stage, but
+     * whose elements are produced by the stage.
+     */
+    private static final class OutputIterable implements Iterable<Object> {
+        private final Iterable<?> iterable;
+        private final Output output;
+
+        private OutputIterable(Iterable<?> iterable, Output output) {
+            this.iterable = iterable;
+            this.output = output;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            Iterator<?> iterator = iterable.iterator();
+            Timer timer = output.iteratorTimer;
+            Probe probe = output.probe;
+            return new Iterator<>() {
+                private boolean exhausted;
+
+                @Override
+                public boolean hasNext() {
+                    if (timer != null) timer.begin();
+                    boolean hasNext = iterator.hasNext();
+                    if (timer != null) probe.time(timer.end());
+                    if (!hasNext && !exhausted) {
+                        exhausted = true;
+                        output.pending--;
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public Object next() {
+                    if (timer != null) timer.begin();
+                    Object next = iterator.next();
+                    if (timer != null) probe.time(timer.end());
+                    probe.out(1);
+                    return next;
+                }
+            };
+        }
+    }
+
+    private static final class Gatherer implements StreamableGatherer<Object, Object> {
+        private final StreamableGatherer<Object, Object> delegate;
+        private final boolean flat;
+        private final Probe probe;
+        private final Timer timer;
+        // Time spent downstream when the current call started
+        private final long[] downstream;
+
+        // Output for the downstream of the last call. This gatherer is only used by one thread at a time,
+        // every part of a parallel evaluation has its own copy, see split.
+        private Output output;
+
+        private Gatherer(StreamableGatherer<Object, Object> delegate, boolean flat, Probe probe) {
+            this.delegate = delegate;
+            this.flat = flat;
+            this.probe = probe;
+            this.timer = Timer.of(probe);
+            this.downstream = new long[probe.clocks];
+        }
+
+        private Gatherer split() {
+            return new Gatherer(delegate, flat, probe);
+        }
+
+        /**
+         * @return the output to pass to the delegate instead of {@code next}, or null if the output is neither counted nor timed
+         */
+        private Output output(Consumer<Object> next) {
+            if (timer == null && !probe.output) return null;
+            Output current = output;
+            if (current == null || current.next != next) {
+                current = new Output(next, probe, flat);
+                output = current;
+            }
+            return current;
+        }
+
+        private void begin(Output output) {
+            if (timer == null) return;
+            System.arraycopy(output.downstream, 0, downstream, 0, downstream.length);
+            timer.begin();
+        }
+
+        private void end(Output output) {
+            if (timer == null) return;
+            long[] elapsed = timer.end();
+            for (int i = 0; i < elapsed.length; i++) {
+                elapsed[i] -= output.downstream[i] - downstream[i];
+            }
+            probe.time(elapsed);
+        }
+
+        private void recordBuffered(boolean shortCircuit) {
+            long buffered = delegate.buffered();
+            if (buffered > 0) probe.buffered(buffered);
+            if (shortCircuit) probe.shortCircuit();
+        }
+
+        @Override
+        public boolean apply(Object input, Consumer<Object> next) {
+            probe.in(1);
+            Output output = output(next);
+            Object state = probe.before(Phase.APPLY);
+            boolean shortCircuit;
+            try {
+                begin(output);
+                shortCircuit = delegate.apply(input, output == null ? next : output);
+                end(output);
+            } finally {
+                probe.after(Phase.APPLY, state);
+            }
+            recordBuffered(shortCircuit);
+            return shortCircuit;
+        }
+
+        @Override
+        public boolean applyBatch(Object[] input, int length, BatchSink<Object> next) {
+            probe.in(length);
+            Output output = output(next);
+            Object state = probe.before(Phase.BATCH);
+            boolean shortCircuit;
+            try {
+                begin(output);
+                shortCircuit = delegate.applyBatch(input, length, output == null ? next : output);
+                end(output);
+            } finally {
+                probe.after(Phase.BATCH, state);
+            }
+            recordBuffered(shortCircuit);
+            return shortCircuit;
+        }
+
+        @Override
+        public void finish(Consumer<Object> next) {
+            Output output = output(next);
+            Object state = probe.before(Phase.FINISH);
+            try {
+                begin(output);
+                delegate.finish(output == null ? next : output);
+                end(output);
+            } finally {
+                probe.after(Phase.FINISH, state);
+            }
+        }
+
+        @Override
+        public void onClose() {
+            Object state = probe.before(Phase.CLOSE);
+            try {
+                delegate.onClose();
+            } finally {
+                probe.after(Phase.CLOSE, state);
+            }
+        }
+
+        @Override
+        public int flags() {
+            return delegate.flags();
+        }
+
+        @Override
+        public long buffered() {
+            return delegate.buffered();
+        }
+    }
+
+    private static final class Collector<R> implements StreamableCollector<Object, R> {
+        private final StreamableCollector<Object, R> delegate;
+        private final Probe probe;
+        private final Timer timer;
+
+        private Collector(StreamableCollector<Object, R> delegate, Probe probe) {
+            this.delegate = delegate;
+            this.probe = probe;
+            this.timer = Timer.of(probe);
+        }
+
+        private void begin() {
+            if (timer != null) timer.begin();
+        }
+
+        private void end() {
+            if (timer != null) probe.time(timer.end());
+        }
+
+        @Override
+        public boolean apply(Object input) {
+            probe.in(1);
+            Object state = probe.before(Phase.APPLY);
+            boolean shortCircuit;
+            try {
+                begin();
+                shortCircuit = delegate.apply(input);
+                end();
+            } finally {
+                probe.after(Phase.APPLY, state);
+            }
+            if (shortCircuit) probe.shortCircuit();
+            return shortCircuit;
+        }
+
+        @Override
+        public boolean applyBatch(Object[] input, int length) {
+            probe.in(length);
+            Object state = probe.before(Phase.BATCH);
+            boolean shortCircuit;
+            try {
+                begin();
+                shortCircuit = delegate.applyBatch(input, length);
+                end();
+            } finally {
+                probe.after(Phase.BATCH, state);
+            }
+            if (shortCircuit) probe.shortCircuit();
+            return shortCircuit;
+        }
+
+        @Override
+        public R finish() {
+            Object state = probe.before(Phase.FINISH);
+            try {
+                begin();
+                R result = delegate.finish();
+                end();
+                return result;
+            } finally {
+                probe.after(Phase.FINISH, state);
+            }
+        }
+
+        @Override
+        public void onClose() {
+            Object state = probe.before(Phase.CLOSE);
+            try {
+                delegate.onClose();
+            } finally {
+                probe.after(Phase.CLOSE, state);
+            }
+        }
+
+        @Override
+        public void exactSize(long size) {
+            delegate.exactSize(size);
+        }
+
+        @Override
+        public int flags() {
+            return delegate.flags();
+        }
+
+        @Override
+        public StreamableCollector<Object, R> split() {
+            StreamableCollector<Object, R> split = delegate.split();
+            return split == null ? null : new Collector<>(split, probe.split());
+        }
+
+        @Override
+        public R combine(R left, R right) {
+            return delegate.combine(left, right);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.yoyosource.streamable.impl;
 
+import de.yoyosource.streamable.IndexedSource;
 import de.yoyosource.streamable.Streamable;
 import de.yoyosource.streamable.StreamableCollector;
 import de.yoyosource.streamable.StreamableGatherer;
@@ -85,7 +86,7 @@ public interface AdvancedStream<T> extends Streamable<T> {
 
     default AdvancedStream<T> distinctBy(Function<? super T, ?> keyExtractor) {
         return gather(new StreamableGatherer<T, T>() {
-            private Set<Object> elements = new HashSet<>();
+            private DistinctKeys elements = new DistinctKeys();
 
             @Override
             public boolean apply(T input, Consumer<T> next) {
@@ -101,6 +102,69 @@ public interface AdvancedStream<T> extends Streamable<T> {
         });
     }
 
+    /**
+     * Drops every element seen before like {@link #distinctBy(Function)} with the element as key, but in the fixed
+     * memory of a {@link BloomFilter}. Duplicates are always dropped, while about {@code falsePositiveProbability}
+     * of the unique elements are dropped as well once the filter holds {@code expectedInsertions} elements.
+     */
+    default AdvancedStream<T> distinctApprox(long expectedInsertions, double falsePositiveProbability) {
+        return gather(new Operators.ApproximateDistinct<>(new BloomFilter(expectedInsertions, falsePositiveProbability), true));
+    }
+
+    /**
+     * Unlike {@link #distinctApprox(long, double)} this stage is never removed or moved by the optimizer, so the
+     * filter records exactly the elements reaching it and can be inspected or reused afterwards.
+     *
+     * @param filter the filter to record the elements in, elements it already contains are dropped
+     * @see #distinctApprox(long, double)
+     */
+    default AdvancedStream<T> distinctApprox(BloomFilter filter) {
+        return gather(new Operators.ApproximateDistinct<>(filter, false));
+    }
+
+    /**
+     * Estimates the number of distinct elements with a {@link HyperLogLog} sketch of the given precision, which
+     * uses {@code 2^precision} bytes independent of the number of elements. The sketch can be merged with the
+     * sketches of other Streamables. Strings, boxed primitives and enum constants hash the same in every JVM,
+     * other elements are hashed through their {@link Object#hashCode()}, which has to be stable across JVMs as
+     * well for the sketches of different JVMs to be merged.
+     */
+    default HyperLogLog countDistinctApprox(int precision) {
+        return collect(approximatingDistinct(precision));
+    }
+
+    private static <T> StreamableCollector<T, HyperLogLog> approximatingDistinct(int precision) {
+        return new StreamableCollector<>() {
+            private final HyperLogLog sketch = new HyperLogLog(precision);
+
+            @Override
+            public boolean apply(T input) {
+                sketch.add(input);
+                return false;
+            }
+
+            @Override
+            public HyperLogLog finish() {
+                return sketch;
+            }
+
+            @Override
+            public StreamableCollector<T, HyperLogLog> split() {
+                return approximatingDistinct(precision);
+            }
+
+            @Override
+            public HyperLogLog combine(HyperLogLog left, HyperLogLog right) {
+                return left.merge(right);
+            }
+
+            @Override
+            public String toString() {
+                return "countDistinctApprox";
+            }
+        };
+    }
+
     default AdvancedStream<T> peekIndexed(BiConsumer<? super T, Long> action) {
         return gather(new StreamableGatherer<>() {
             private long index = 0;
@@ -135,6 +199,11 @@ public interface AdvancedStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<T> next) {
             }
+
+            @Override
+            public int flags() {
+                return SHORT_CIRCUIT;
+            }
         });
     }
 
@@ -162,21 +231,54 @@ public interface AdvancedStream<T> extends Streamable<T> {
 
     default <K> AdvancedStream<Map<K, List<T>>> groupBy(Function<? super T, ? extends K> keyExtractor) {
         return gather(new StreamableGatherer<>() {
-            private Map<K, List<T>> data = new HashMap<>();
+            // An EnumMap as long as all keys are constants of one enum
+            private Map<K, List<T>> data;
+            private Class<?> enumType;
+            private long size = 0;
 
             @Override
             public boolean apply(T input, Consumer<Map<K, List<T>>> next) {
-                data.computeIfAbsent(keyExtractor.apply(input), k -> new ArrayList<>()).add(input);
+                K key = keyExtractor.apply(input);
+                if (data == null) {
+                    enumType = Keys.enumType(key);
+                    data = enumType != null ? Keys.<K, List<T>>enumMap(enumType) : new HashMap<>();
+                } else if (enumType != null && !enumType.isInstance(key)) {
+                    enumType = null;
+                    data = new HashMap<>(data);
+                }
+                data.computeIfAbsent(key, k -> new ArrayList<>()).add(input);
+                size++;
                 return false;
             }
 
             @Override
             public void finish(Consumer<Map<K, List<T>>> next) {
-                next.accept(data);
+                next.accept(data != null ? data : new HashMap<>());
+            }
+
+            @Override
+            public long buffered() {
+                return size;
             }
         });
     }
 
+    /**
+     * Like {@link #groupBy(Function)} but emits one entry per key instead of one map, and keeps at most
+     * {@code maxInMemory} elements on the heap. Past that the elements are hash partitioned by their key into
+     * temporary files written with the codec, and every partition is grouped on its own once all elements are known.
+     * A partition larger than {@code maxInMemory} is partitioned again with another hash seed. The elements of one
+     * key are emitted as one list, so a key with more elements than {@code maxInMemory}, or keys that share their
+     * {@link Object#hashCode()}, are still grouped on the heap. The key extractor is applied again to the elements read
+     * back. The files are deleted once the evaluation ends or fails.
+     */
+    default <K> AdvancedStream<Map.Entry<K, List<T>>> groupBy(Function<? super T, ? extends K> keyExtractor, int maxInMemory, ElementCodec<T> codec) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be a positive number");
+        }
+        return flatGather(new SpillingAggregation.Grouping<>(keyExtractor, maxInMemory, Objects.requireNonNull(codec)));
+    }
+
     default AdvancedStream<T> elementCount(Consumer<Long> consumer) {
         return gather(new StreamableGatherer<>() {
             private long count = 0;
@@ -205,17 +307,99 @@ public interface AdvancedStream<T> extends Streamable<T> {
 
     default <K> AdvancedStream<Map<K, Long>> countsBy(Function<? super T, ? extends K> keyExtractor) {
         return gather(new StreamableGatherer<>() {
-            private Map<K, Long> data = new HashMap<>();
+            private KeyCounts<K> data = new KeyCounts<>();
 
             @Override
             public boolean apply(T input, Consumer<Map<K, Long>> next) {
-                data.compute(keyExtractor.apply(input), (k, v) -> v == null ? 1 : v + 1);
+                data.increment(keyExtractor.apply(input));
                 return false;
             }
 
             @Override
             public void finish(Consumer<Map<K, Long>> next) {
-                next.accept(data);
+                next.accept(data.toMap());
+            }
+
+            @Override
+            public long buffered() {
+                return data.size();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #countsBy(Function)} but emits one entry per key instead of one map, and keeps at most
+     * {@code maxInMemory} keys on the heap. Past that the partial counts are hash partitioned by their key into
+     * temporary files, where the keys are written with the codec.
+     *
+     * @see #groupBy(Function, int, ElementCodec)
+     */
+    default <K> AdvancedStream<Map.Entry<K, Long>> countsBy(Function<? super T, ? extends K> keyExtractor, int maxInMemory, ElementCodec<K> codec) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be a positive number");
+        }
+        return flatGather(new SpillingAggregation.Counting<>(keyExtractor, maxInMemory, Objects.requireNonNull(codec)));
+    }
+
+    default AdvancedStream<List<SpaceSaving.Item<T>>> topFrequent(int k) {
+        return topFrequent(k, 0);
+    }
+
+    /**
+     * @see #topFrequentBy(Function, int, int, long)
+     */
+    default AdvancedStream<List<SpaceSaving.Item<T>>> topFrequent(int k, long snapshotInterval) {
+        return topFrequentBy(Function.identity(), k, (int) Math.min(Integer.MAX_VALUE, Math.max(10L * k, 1024)), snapshotInterval);
+    }
+
+    /**
+     * Emits the {@code k} most frequent keys with their estimated counts, highest first, using a
+     * {@link SpaceSaving} sketch of {@code capacity} counters instead of one counter per key like
+     * {@link #countsBy(Function)}. The counts are overestimated by at most {@code elements / capacity}.
+     *
+     * @param snapshotInterval the number of elements after which the current top keys are emitted, which suits
+     *                         unbounded streams that never finish, or 0 to only emit them once all elements are known
+     */
+    default <K> AdvancedStream<List<SpaceSaving.Item<K>>> topFrequentBy(Function<? super T, ? extends K> keyExtractor, int k, int capacity, long snapshotInterval) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be a positive number");
+        }
+        if (capacity < k) {
+            throw new IllegalArgumentException("capacity must be at least k");
+        }
+        if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("snapshotInterval must be a positive number");
+        }
+        return gather(new StreamableGatherer<>() {
+            private final SpaceSaving<K> sketch = new SpaceSaving<>(capacity);
+            private long untilSnapshot = snapshotInterval;
+
+            @Override
+            public boolean apply(T input, Consumer<List<SpaceSaving.Item<K>>> next) {
+                sketch.add(keyExtractor.apply(input));
+                if (snapshotInterval != 0 && --untilSnapshot == 0) {
+                    untilSnapshot = snapshotInterval;
+                    next.accept(sketch.top(k));
+                }
+                return false;
+            }
+
+            @Override
+            public void finish(Consumer<List<SpaceSaving.Item<K>>> next) {
+                // Unless the last snapshot already covers all elements
+                if (snapshotInterval == 0 || untilSnapshot != snapshotInterval || sketch.getTotal() == 0) {
+                    next.accept(sketch.top(k));
+                }
+            }
+
+            @Override
+            public long buffered() {
+                return Math.min(sketch.getTotal(), capacity);
+            }
+
+            @Override
+            public String toString() {
+                return "topFrequent";
             }
         });
     }
@@ -247,40 +431,79 @@ public interface AdvancedStream<T> extends Streamable<T> {
                     next.accept(elements);
                 }
             }
+
+            @Override
+            public long buffered() {
+                return elements.size();
+            }
         });
     }
 
     default AdvancedStream<List<T>> windowSliding(int windowSize) {
-        return windowSliding(windowSize, false);
+        return windowSliding(windowSize, 1, false);
     }
 
     default AdvancedStream<List<T>> windowSliding(int windowSize, boolean keepPartial) {
+        return windowSliding(windowSize, 1, keepPartial);
+    }
+
+    default AdvancedStream<List<T>> windowSliding(int windowSize, int step) {
+        return windowSliding(windowSize, step, false);
+    }
+
+    /**
+     * Emits the last {@code windowSize} elements once the window is full and then after every {@code step}
+     * elements, so a step of {@code windowSize} emits tumbling windows and a larger step skips elements.
+     *
+     * @param keepPartial whether the elements are emitted if there are fewer than {@code windowSize}
+     */
+    default AdvancedStream<List<T>> windowSliding(int windowSize, int step, boolean keepPartial) {
+        return windowSliding(windowSize, step, keepPartial, false);
+    }
+
+    /**
+     * Like {@link #windowSliding(int, int)} but emits a read-only view of the window instead of a copy,
+     * which avoids copying the window for every step. The view is only valid until the next window is
+     * emitted, so it has to be copied if it is kept.
+     */
+    default AdvancedStream<List<T>> windowSlidingView(int windowSize, int step) {
+        return windowSliding(windowSize, step, false, true);
+    }
+
+    private AdvancedStream<List<T>> windowSliding(int windowSize, int step, boolean keepPartial, boolean view) {
         if (windowSize < 1) {
             throw new IllegalArgumentException("Window size must be at least 1");
         }
+        if (step < 1) {
+            throw new IllegalArgumentException("Step must be at least 1");
+        }
         return gather(new StreamableGatherer<>() {
+            private final RingWindow<T> window = new RingWindow<>(windowSize);
             private boolean hadOneResult = false;
-            private List<T> elements = new ArrayList<>();
+            private long untilResult = windowSize;
 
             @Override
             public boolean apply(T input, Consumer<List<T>> next) {
-                elements.add(input);
-                if (elements.size() > windowSize) {
-                    elements.remove(0);
-                }
-                if (elements.size() == windowSize) {
-                    next.accept(new ArrayList<>(elements));
+                window.add(input);
+                if (--untilResult == 0) {
+                    untilResult = step;
                     hadOneResult = true;
+                    next.accept(view ? window.view() : window.copy());
                 }
                 return false;
             }
 
             @Override
             public void finish(Consumer<List<T>> next) {
-                if (keepPartial && !hadOneResult && elements.size() != 0) {
-                    next.accept(elements);
+                if (keepPartial && !hadOneResult && window.size() != 0) {
+                    next.accept(view ? window.view() : window.copy());
                 }
             }
+
+            @Override
+            public long buffered() {
+                return window.size();
+            }
         });
     }
 
@@ -327,13 +550,27 @@ public interface AdvancedStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<Iterable<T>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 
     default Set<T> toSet() {
-        return collect(new StreamableCollector<>() {
+        return collect(setting());
+    }
+
+    private static <T> StreamableCollector<T, Set<T>> setting() {
+        return new StreamableCollector<>() {
             private Set<T> elements = new HashSet<>();
 
+            @Override
+            public void exactSize(long size) {
+                if (size <= Integer.MAX_VALUE / 2) elements = new HashSet<>((int) (size / 0.75f) + 1);
+            }
+
             @Override
             public boolean apply(T input) {
                 elements.add(input);
@@ -344,7 +581,18 @@ public interface AdvancedStream<T> extends Streamable<T> {
             public Set<T> finish() {
                 return elements;
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Set<T>> split() {
+                return setting();
+            }
+
+            @Override
+            public Set<T> combine(Set<T> left, Set<T> right) {
+                left.addAll(right);
+                return left;
+            }
+        };
     }
 
     default AdvancedStream<T> scan(BiFunction<T, T, T> accumulator) {
@@ -399,6 +647,11 @@ public interface AdvancedStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<T> next) {
             }
+
+            @Override
+            public int flags() {
+                return n == 1 ? SHORT_CIRCUIT : 0;
+            }
         });
     }
 
@@ -428,9 +681,24 @@ public interface AdvancedStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<T> next) {
             }
+
+            @Override
+            public Spliterator<?> slice(IndexedSource source) {
+                return source.slice(offset, Long.MAX_VALUE, n);
+            }
         });
     }
 
+    /**
+     * @return the element at {@code index} or an empty optional if there are not enough elements
+     */
+    default Optional<T> elementAt(long index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("index must be a positive number");
+        }
+        return gather(new Operators.Skipping<>(index)).collect(new Operators.First<>());
+    }
+
     default AdvancedStream<Map.Entry<T, Long>> consecutiveElementCount() {
         return consecutiveElementCountBy(Objects::equals);
     }
@@ -486,6 +754,11 @@ public interface AdvancedStream<T> extends Streamable<T> {
                 next.accept(new ArrayList<>(elements));
                 elements.clear();
             }
+
+            @Override
+            public long buffered() {
+                return elements.size();
+            }
         });
     }
 }
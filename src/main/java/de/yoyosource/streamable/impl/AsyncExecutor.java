@@ -0,0 +1,49 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Support for the async stages of {@link JavaStream}.
+ */
+final class AsyncExecutor {
+
+    private AsyncExecutor() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Starts one virtual thread per task if the runtime supports virtual threads, otherwise falls
+     * back to a cached pool of daemon threads.
+     */
+    static final Executor DEFAULT = create();
+
+    private static Executor create() {
+        try {
+            // Looked up reflectively, as virtual threads are not available on every supported Java version
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "Streamable-Async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static <R> R await(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an async element", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
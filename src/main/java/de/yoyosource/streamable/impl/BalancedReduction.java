@@ -0,0 +1,54 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Combines values pairwise like the leaves of a balanced binary tree, so that both operands of a
+ * combination stand for about the same number of values. For operators whose cost grows with the
+ * size of their operands, like {@link java.math.BigInteger#multiply(java.math.BigInteger)} or
+ * string concatenation, this costs O(n log n) instead of the O(n^2) of a left fold. The partial
+ * results are kept on a stack like the digits of a binary counter, which never holds more than
+ * 64 entries. The order of the values is kept, so the operator only has to be associative.
+ */
+final class BalancedReduction<T> {
+
+    private final BinaryOperator<T> operator;
+    private final Object[] values = new Object[Long.SIZE];
+    // 'counts[i]' is the number of values combined into 'values[i]', always a power of two decreasing towards the top
+    private final long[] counts = new long[Long.SIZE];
+    private int size;
+
+    BalancedReduction(BinaryOperator<T> operator) {
+        this.operator = operator;
+    }
+
+    @SuppressWarnings("unchecked") // The values are only ever of type T
+    void add(T value) {
+        long count = 1;
+        while (size > 0 && counts[size - 1] == count) {
+            size--;
+            value = operator.apply((T) values[size], value);
+            values[size] = null;
+            count <<= 1;
+        }
+        values[size] = value;
+        counts[size] = count;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the combination of all values added so far, which must not be empty
+     */
+    @SuppressWarnings("unchecked") // The values are only ever of type T
+    T result() {
+        T result = (T) values[size - 1];
+        for (int i = size - 2; i >= 0; i--) {
+            result = operator.apply((T) values[i], result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package de.yoyosource.streamable.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A Bloom filter over a fixed number of bits, which never forgets an element but may claim to
+ * contain an element it never saw. The bits and the number of hash functions are chosen for the
+ * expected number of insertions and the wanted false positive probability. Filters of the same
+ * configuration can be merged, for example the filters of different shards. Strings, boxed
+ * primitives and enum constants hash the same in every JVM, other elements are hashed through
+ * their {@link Object#hashCode()}, which has to be stable across JVMs as well for filters of
+ * different JVMs to be merged or for a serialized filter to be used in another JVM.
+ *
+ * @see AdvancedStream#distinctApprox(long, double)
+ */
+public final class BloomFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be a positive number");
+        }
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long bitCount = Math.max(Long.SIZE, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bitCount + Long.SIZE - 1) / Long.SIZE);
+        this.bits = new long[words];
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedInsertions * ln2));
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return true if the element was definitely not contained before
+     */
+    public boolean put(Object element) {
+        long hash = Hashing.hash(element);
+        // Double hashing derives all hash functions from the two halves of one hash
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long index = Math.floorMod(first + (long) i * second, bitCount);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean mightContain(Object element) {
+        long hash = Hashing.hash(element);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = Math.floorMod(first + (long) i * second, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds all elements of the other filter to this filter.
+     *
+     * @return this filter
+     */
+    public BloomFilter merge(BloomFilter other) {
+        if (other.bitCount != bitCount || other.hashCount != hashCount) {
+            throw new IllegalArgumentException("Cannot merge filters of different configurations");
+        }
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BloomFilter)) return false;
+        BloomFilter that = (BloomFilter) o;
+        return hashCount == that.hashCount && Arrays.equals(bits, that.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * hashCount + Arrays.hashCode(bits);
+    }
+}
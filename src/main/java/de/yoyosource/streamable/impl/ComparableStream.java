@@ -2,12 +2,9 @@ package de.yoyosource.streamable.impl;
 
 import de.yoyosource.streamable.Streamable;
 import de.yoyosource.streamable.StreamableCollector;
-import de.yoyosource.streamable.StreamableGatherer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Consumer;
 
 public interface ComparableStream<T extends Comparable<T>> extends Streamable<T> {
 
@@ -16,21 +13,17 @@ public interface ComparableStream<T extends Comparable<T>> extends Streamable<T>
     }
 
     default ComparableStream<T> sorted() {
-        return flatGather(new StreamableGatherer<>() {
-            private List<T> elements = new ArrayList<>();
-
-            @Override
-            public boolean apply(T input, Consumer<Iterable<T>> next) {
-                elements.add(input);
-                return false;
-            }
+        return flatGather(new Operators.Sorting<>(null));
+    }
 
-            @Override
-            public void finish(Consumer<Iterable<T>> next) {
-                elements.sort(null);
-                next.accept(elements);
-            }
-        });
+    /**
+     * @see JavaStream#sorted(java.util.Comparator, int, ElementCodec)
+     */
+    default ComparableStream<T> sorted(int maxInMemory, ElementCodec<T> codec) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be a positive number");
+        }
+        return flatGather(new Operators.Sorting<>(null, maxInMemory, Objects.requireNonNull(codec)));
     }
 
     default Optional<T> min() {
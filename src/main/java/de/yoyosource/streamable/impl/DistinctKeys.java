@@ -0,0 +1,88 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+/**
+ * The set behind distinct and distinctBy, which is specialized by the first key: keys of one
+ * primitive wrapper class go into a {@link LongHashSet}, constants of one enum into a bitset of
+ * their ordinals and everything else into a {@link HashSet}. A key which does not fit the chosen
+ * specialization moves all keys into a {@link HashSet}.
+ */
+final class DistinctKeys {
+
+    // The class of the keys stored as longs or the enum of the ordinals
+    private Class<?> type;
+    private LongFunction<Object> boxing;
+    private LongHashSet longs;
+    private long[] ordinals;
+    private long ordinalCount;
+    private Set<Object> objects;
+
+    /**
+     * @return true if the key was not contained yet
+     */
+    boolean add(Object key) {
+        if (longs != null) {
+            if (key != null && key.getClass() == type) return longs.add(Keys.unboxing(key));
+        } else if (ordinals != null) {
+            if (type.isInstance(key)) return addOrdinal(((Enum<?>) key).ordinal());
+        } else if (objects != null) {
+            return objects.add(key);
+        } else {
+            specialize(key);
+            return add(key);
+        }
+        generalize();
+        return objects.add(key);
+    }
+
+    private boolean addOrdinal(int ordinal) {
+        long bit = 1L << ordinal;
+        long word = ordinals[ordinal >>> 6];
+        if ((word & bit) != 0) return false;
+        ordinals[ordinal >>> 6] = word | bit;
+        ordinalCount++;
+        return true;
+    }
+
+    private void specialize(Object key) {
+        if (key == null) {
+            objects = new HashSet<>();
+            return;
+        }
+        boxing = Keys.boxing(key.getClass());
+        Class<?> enumType = Keys.enumType(key);
+        if (boxing != null) {
+            type = key.getClass();
+            longs = new LongHashSet();
+        } else if (enumType != null) {
+            type = enumType;
+            ordinals = new long[(enumType.getEnumConstants().length + 63) >>> 6];
+        } else {
+            objects = new HashSet<>();
+        }
+    }
+
+    private void generalize() {
+        objects = new HashSet<>();
+        if (longs != null) {
+            longs.forEach(value -> objects.add(boxing.apply(value)));
+            longs = null;
+        }
+        if (ordinals != null) {
+            Object[] constants = type.getEnumConstants();
+            for (int i = 0; i < constants.length; i++) {
+                if ((ordinals[i >>> 6] & (1L << i)) != 0) objects.add(constants[i]);
+            }
+            ordinals = null;
+        }
+    }
+
+    long size() {
+        if (longs != null) return longs.size();
+        if (ordinals != null) return ordinalCount;
+        return objects == null ? 0 : objects.size();
+    }
+}
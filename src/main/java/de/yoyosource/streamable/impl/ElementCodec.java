@@ -0,0 +1,88 @@
+package de.yoyosource.streamable.impl;
+
+import java.io.*;
+
+/**
+ * Writes elements to and reads them back from the temporary files of operators which spill to
+ * disk once they exceed their memory budget, like {@link JavaStream#sorted(java.util.Comparator, int, ElementCodec)}.
+ *
+ * @param <T> the type of the elements
+ */
+public interface ElementCodec<T> {
+
+    void write(T element, DataOutput output) throws IOException;
+
+    T read(DataInput input) throws IOException;
+
+    static ElementCodec<String> strings() {
+        return new ElementCodec<>() {
+            @Override
+            public void write(String element, DataOutput output) throws IOException {
+                output.writeUTF(element);
+            }
+
+            @Override
+            public String read(DataInput input) throws IOException {
+                return input.readUTF();
+            }
+        };
+    }
+
+    static ElementCodec<Integer> integers() {
+        return new ElementCodec<>() {
+            @Override
+            public void write(Integer element, DataOutput output) throws IOException {
+                output.writeInt(element);
+            }
+
+            @Override
+            public Integer read(DataInput input) throws IOException {
+                return input.readInt();
+            }
+        };
+    }
+
+    static ElementCodec<Long> longs() {
+        return new ElementCodec<>() {
+            @Override
+            public void write(Long element, DataOutput output) throws IOException {
+                output.writeLong(element);
+            }
+
+            @Override
+            public Long read(DataInput input) throws IOException {
+                return input.readLong();
+            }
+        };
+    }
+
+    /**
+     * A codec for any {@link Serializable} element using Java serialization, which is far slower
+     * and larger than a codec written for the element type.
+     */
+    static <T extends Serializable> ElementCodec<T> serializable() {
+        return new ElementCodec<>() {
+            @Override
+            public void write(T element, DataOutput output) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+                    objectOutput.writeObject(element);
+                }
+                output.writeInt(bytes.size());
+                output.write(bytes.toByteArray());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked") // Only elements of type T were written
+            public T read(DataInput input) throws IOException {
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) objectInput.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidClassException(e.getMessage());
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package de.yoyosource.streamable.impl;
+
+/**
+ * The 64 bit hashes of the sketches {@link HyperLogLog} and {@link BloomFilter}. Keys stored as
+ * longs by {@link Keys} and character sequences are hashed over their whole value, so the hashes
+ * are stable across JVMs and do not collide like 32 bit hash codes. Enum constants are hashed by the
+ * name of their enum and their ordinal, as their hash code is the identity hash code, which differs
+ * between JVMs. Any other element is hashed through its {@link Object#hashCode()}, so only sketches
+ * of elements whose hash code is stable across JVMs can be merged with sketches of other JVMs.
+ */
+final class Hashing {
+
+    private Hashing() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static long hash(Object value) {
+        if (value == null) return mix(0);
+        if (value instanceof CharSequence) return mix(hash((CharSequence) value));
+        if (Keys.boxing(value.getClass()) != null) return mix(Keys.unboxing(value));
+        if (value instanceof Enum) {
+            Enum<?> constant = (Enum<?>) value;
+            return mix(hash(constant.getDeclaringClass().getName()) * 31 + constant.ordinal());
+        }
+        return mix(value.hashCode());
+    }
+
+    /**
+     * FNV-1a over the characters of the sequence.
+     */
+    private static long hash(CharSequence sequence) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < sequence.length(); i++) {
+            hash = (hash ^ sequence.charAt(i)) * 0x100000001B3L;
+        }
+        return hash ^ sequence.length();
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads every input bit over all output bits.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,104 @@
+package de.yoyosource.streamable.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct elements in {@code 2^precision} bytes.
+ * The standard error of the estimate is about {@code 1.04 / sqrt(2^precision)}, so a precision of
+ * 14 uses 16 KiB for an error of about 0.8%. Sketches of the same precision can be merged, for
+ * example the sketches of different shards, which estimates the distinct elements of all of them.
+ *
+ * @see AdvancedStream#countDistinctApprox(int)
+ */
+public final class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(Object element) {
+        long hash = Hashing.hash(element);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // The guard bit bounds the rank, if all remaining bits are 0
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (registers[index] < rank) registers[index] = rank;
+    }
+
+    /**
+     * Adds all elements of the other sketch to this sketch.
+     *
+     * @return this sketch
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) registers[i] = other.registers[i];
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) zeros++;
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // Linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * m && zeros != 0) estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HyperLogLog)) return false;
+        HyperLogLog that = (HyperLogLog) o;
+        return precision == that.precision && Arrays.equals(registers, that.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{precision=" + precision + ", estimate=" + estimate() + "}";
+    }
+}
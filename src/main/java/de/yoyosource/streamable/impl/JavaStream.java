@@ -1,10 +1,14 @@
 package de.yoyosource.streamable.impl;
 
+import de.yoyosource.streamable.DoubleStreamable;
+import de.yoyosource.streamable.IntStreamable;
+import de.yoyosource.streamable.LongStreamable;
 import de.yoyosource.streamable.Streamable;
 import de.yoyosource.streamable.StreamableCollector;
 import de.yoyosource.streamable.StreamableGatherer;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.stream.Collector;
 
@@ -15,31 +19,27 @@ public interface JavaStream<T> extends Streamable<T> {
     }
 
     default JavaStream<T> filter(Predicate<? super T> predicate) {
-        return gather(new StreamableGatherer<T, T>() {
-            @Override
-            public boolean apply(T input, Consumer<T> next) {
-                if (predicate.test(input)) next.accept(input);
-                return false;
-            }
-
-            @Override
-            public void finish(Consumer<T> next) {
-            }
-        });
+        return gather(new Operators.Filtering<>(predicate));
     }
 
+    /**
+     * The mapper should not have side effects, as it is not called for elements whose result is never used,
+     * see {@link #count()}.
+     */
     default <R> JavaStream<R> map(Function<? super T, ? extends R> mapper) {
-        return gather(new StreamableGatherer<>() {
-            @Override
-            public boolean apply(T input, Consumer<R> next) {
-                next.accept(mapper.apply(input));
-                return false;
-            }
+        return gather(new Operators.Mapping<>(mapper));
+    }
 
-            @Override
-            public void finish(Consumer<R> next) {
-            }
-        });
+    default IntStreamable mapToInt(ToIntFunction<? super T> mapper) {
+        return IntStreamable.from(toStream().mapToInt(mapper).spliterator());
+    }
+
+    default LongStreamable mapToLong(ToLongFunction<? super T> mapper) {
+        return LongStreamable.from(toStream().mapToLong(mapper).spliterator());
+    }
+
+    default DoubleStreamable mapToDouble(ToDoubleFunction<? super T> mapper) {
+        return DoubleStreamable.from(toStream().mapToDouble(mapper).spliterator());
     }
 
     default <R> JavaStream<R> flatMap(Function<? super T, ? extends Iterable<? extends R>> mapper) {
@@ -53,6 +53,11 @@ public interface JavaStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<Iterable<R>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 
@@ -67,90 +72,155 @@ public interface JavaStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<R> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 
-    default JavaStream<T> distinct() {
+    /**
+     * Like {@link #map(Function)} but applies the mapper on virtual threads, or on daemon threads
+     * if the runtime has no virtual threads, with at most {@code maxConcurrency} calls in flight.
+     * The results are emitted in encounter order.
+     */
+    default <R> JavaStream<R> mapAsync(Function<? super T, ? extends R> mapper, int maxConcurrency) {
+        return mapAsync(mapper, maxConcurrency, AsyncExecutor.DEFAULT);
+    }
+
+    default <R> JavaStream<R> mapAsync(Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
         return gather(new StreamableGatherer<>() {
-            private Set<T> elements = new HashSet<>();
+            // Calls in flight in encounter order, the head is emitted first
+            private final Deque<Future<R>> pending = new ArrayDeque<>();
 
             @Override
-            public boolean apply(T input, Consumer<T> next) {
-                if (elements.add(input)) next.accept(input);
+            public boolean apply(T input, Consumer<R> next) {
+                FutureTask<R> task = new FutureTask<>(() -> mapper.apply(input));
+                pending.add(task);
+                executor.execute(task);
+                while (!pending.isEmpty() && (pending.size() >= maxConcurrency || pending.peek().isDone())) {
+                    next.accept(AsyncExecutor.await(pending.poll()));
+                }
                 return false;
             }
 
             @Override
-            public void finish(Consumer<T> next) {
+            public void finish(Consumer<R> next) {
+                while (!pending.isEmpty()) {
+                    next.accept(AsyncExecutor.await(pending.poll()));
+                }
+            }
+
+            @Override
+            public void onClose() {
+                // Only calls that were cut off by a short-circuit downstream are left
+                for (Future<R> future : pending) {
+                    future.cancel(true);
+                }
+                pending.clear();
             }
         });
     }
 
-    default JavaStream<T> sorted(Comparator<? super T> comparator) {
-        return flatGather(new StreamableGatherer<>() {
-            private List<T> elements = new ArrayList<>();
+    /**
+     * Like {@link #mapAsync(Function, int)} but emits the results in the order the calls complete.
+     */
+    default <R> JavaStream<R> mapAsyncUnordered(Function<? super T, ? extends R> mapper, int maxConcurrency) {
+        return mapAsyncUnordered(mapper, maxConcurrency, AsyncExecutor.DEFAULT);
+    }
 
-            @Override
-            public boolean apply(T input, Consumer<Iterable<T>> next) {
-                elements.add(input);
-                return false;
+    default <R> JavaStream<R> mapAsyncUnordered(Function<? super T, ? extends R> mapper, int maxConcurrency, Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        return gather(new StreamableGatherer<>() {
+            private final CompletionService<R> completionService = new ExecutorCompletionService<>(executor);
+            private final Set<Future<R>> pending = new HashSet<>();
+
+            private R take() {
+                Future<R> future;
+                try {
+                    future = completionService.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for an async element", e);
+                }
+                pending.remove(future);
+                return AsyncExecutor.await(future);
             }
 
             @Override
-            public void finish(Consumer<Iterable<T>> next) {
-                elements.sort(comparator);
-                next.accept(elements);
+            public boolean apply(T input, Consumer<R> next) {
+                pending.add(completionService.submit(() -> mapper.apply(input)));
+                Future<R> future;
+                while ((future = completionService.poll()) != null) {
+                    pending.remove(future);
+                    next.accept(AsyncExecutor.await(future));
+                }
+                while (pending.size() >= maxConcurrency) {
+                    next.accept(take());
+                }
+                return false;
             }
-        });
-    }
 
-    default JavaStream<T> peek(Consumer<? super T> action) {
-        return gather(new StreamableGatherer<>() {
             @Override
-            public boolean apply(T input, Consumer<T> next) {
-                action.accept(input);
-                next.accept(input);
-                return false;
+            public void finish(Consumer<R> next) {
+                while (!pending.isEmpty()) {
+                    next.accept(take());
+                }
             }
 
             @Override
-            public void finish(Consumer<T> next) {
+            public void onClose() {
+                for (Future<R> future : pending) {
+                    future.cancel(true);
+                }
+                pending.clear();
             }
         });
     }
 
-    default JavaStream<T> limit(long maxSize) {
-        return gather(new StreamableGatherer<>() {
-            private long elementsLeft = maxSize;
+    default JavaStream<T> distinct() {
+        return gather(new Operators.Distinct<>());
+    }
 
-            @Override
-            public boolean apply(T input, Consumer<T> next) {
-                next.accept(input);
-                elementsLeft--;
-                return elementsLeft == 0;
-            }
+    default JavaStream<T> sorted(Comparator<? super T> comparator) {
+        return flatGather(new Operators.Sorting<>(comparator));
+    }
 
-            @Override
-            public void finish(Consumer<T> next) {
-            }
-        });
+    /**
+     * Like {@link #sorted(Comparator)} but keeps at most {@code maxInMemory} elements on the heap. Past that the
+     * elements are sorted in runs, which are written to temporary files with the codec and merged lazily, so a
+     * following limit only reads the runs as far as needed. The files are deleted once the evaluation ends or fails,
+     * which for an iterator is once its last element is taken, also if a limit cut it short.
+     */
+    default JavaStream<T> sorted(Comparator<? super T> comparator, int maxInMemory, ElementCodec<T> codec) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be a positive number");
+        }
+        return flatGather(new Operators.Sorting<>(comparator, maxInMemory, Objects.requireNonNull(codec)));
     }
 
-    default JavaStream<T> skip(long skip) {
-        return gather(new StreamableGatherer<>() {
-            private long elementsLeft = skip;
+    default JavaStream<T> peek(Consumer<? super T> action) {
+        return gather(new Operators.Peeking<>(action));
+    }
 
-            @Override
-            public boolean apply(T input, Consumer<T> next) {
-                elementsLeft--;
-                if (elementsLeft < 0) next.accept(input);
-                return false;
-            }
+    default JavaStream<T> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be a positive number");
+        }
+        return gather(new Operators.Limiting<>(maxSize));
+    }
 
-            @Override
-            public void finish(Consumer<T> next) {
-            }
-        });
+    default JavaStream<T> skip(long skip) {
+        if (skip < 0) {
+            throw new IllegalArgumentException("skip must be a positive number");
+        }
+        return gather(new Operators.Skipping<>(skip));
     }
 
     default JavaStream<T> takeWhile(Predicate<? super T> predicate) {
@@ -168,6 +238,11 @@ public interface JavaStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<T> next) {
             }
+
+            @Override
+            public int flags() {
+                return SHORT_CIRCUIT;
+            }
         });
     }
 
@@ -193,24 +268,59 @@ public interface JavaStream<T> extends Streamable<T> {
     }
 
     default <A> A[] toArray(IntFunction<A[]> generator) {
-        return collect(new StreamableCollector<>() {
-            private List<T> elements = new ArrayList<>();
+        return collect(arraying(generator));
+    }
+
+    private static <T, A> StreamableCollector<T, A[]> arraying(IntFunction<A[]> generator) {
+        return new StreamableCollector<>() {
+            // Filled directly if the number of elements is known, otherwise the elements are listed first
+            private A[] array;
+            private int length;
+            private List<T> elements;
 
             @Override
+            public void exactSize(long size) {
+                if (size <= Integer.MAX_VALUE - 8) array = generator.apply((int) size);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked") // The generator creates an array of the element type
             public boolean apply(T input) {
-                elements.add(input);
+                if (array != null) {
+                    array[length++] = (A) input;
+                } else {
+                    if (elements == null) elements = new ArrayList<>();
+                    elements.add(input);
+                }
                 return false;
             }
 
             @Override
             public A[] finish() {
-                return elements.toArray(generator);
+                if (array != null) return array;
+                return elements == null ? generator.apply(0) : elements.toArray(generator);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, A[]> split() {
+                return arraying(generator);
+            }
+
+            @Override
+            public A[] combine(A[] left, A[] right) {
+                A[] combined = Arrays.copyOf(left, left.length + right.length);
+                System.arraycopy(right, 0, combined, left.length, right.length);
+                return combined;
+            }
+        };
     }
 
     default T reduce(T identity, BinaryOperator<T> accumulator) {
-        return collect(new StreamableCollector<>() {
+        return collect(reducing(identity, accumulator));
+    }
+
+    private static <T> StreamableCollector<T, T> reducing(T identity, BinaryOperator<T> accumulator) {
+        return new StreamableCollector<>() {
             private T current = identity;
 
             @Override
@@ -223,11 +333,25 @@ public interface JavaStream<T> extends Streamable<T> {
             public T finish() {
                 return current;
             }
-        });
+
+            @Override
+            public StreamableCollector<T, T> split() {
+                return reducing(identity, accumulator);
+            }
+
+            @Override
+            public T combine(T left, T right) {
+                return accumulator.apply(left, right);
+            }
+        };
     }
 
     default Optional<T> reduce(BinaryOperator<T> accumulator) {
-        return collect(new StreamableCollector<>() {
+        return collect(reducing(accumulator));
+    }
+
+    private static <T> StreamableCollector<T, Optional<T>> reducing(BinaryOperator<T> accumulator) {
+        return new StreamableCollector<>() {
             private T current = null;
 
             @Override
@@ -244,7 +368,58 @@ public interface JavaStream<T> extends Streamable<T> {
             public Optional<T> finish() {
                 return Optional.ofNullable(current);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return reducing(accumulator);
+            }
+
+            @Override
+            public Optional<T> combine(Optional<T> left, Optional<T> right) {
+                if (left.isEmpty()) return right;
+                if (right.isEmpty()) return left;
+                return Optional.ofNullable(accumulator.apply(left.get(), right.get()));
+            }
+        };
+    }
+
+    /**
+     * Like {@link #reduce(BinaryOperator)}, but combines the elements pairwise like a balanced binary tree instead
+     * of folding them from left to right, which is much faster for accumulators whose cost grows with their operands,
+     * like {@code BigInteger::multiply}. The accumulator has to be associative. A parallel Streamable reduces every
+     * split this way and combines the results of the splits.
+     */
+    default Optional<T> reduceBalanced(BinaryOperator<T> accumulator) {
+        return collect(reducingBalanced(accumulator));
+    }
+
+    private static <T> StreamableCollector<T, Optional<T>> reducingBalanced(BinaryOperator<T> accumulator) {
+        return new StreamableCollector<>() {
+            private final BalancedReduction<T> reduction = new BalancedReduction<>(accumulator);
+
+            @Override
+            public boolean apply(T input) {
+                reduction.add(input);
+                return false;
+            }
+
+            @Override
+            public Optional<T> finish() {
+                return reduction.isEmpty() ? Optional.empty() : Optional.ofNullable(reduction.result());
+            }
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return reducingBalanced(accumulator);
+            }
+
+            @Override
+            public Optional<T> combine(Optional<T> left, Optional<T> right) {
+                if (left.isEmpty()) return right;
+                if (right.isEmpty()) return left;
+                return Optional.ofNullable(accumulator.apply(left.get(), right.get()));
+            }
+        };
     }
 
     default <U> U reduce(U identity, BiFunction<U, ? super T, U> accumulator) {
@@ -282,7 +457,11 @@ public interface JavaStream<T> extends Streamable<T> {
     }
 
     default <R, A> R collect(Collector<? super T, A, R> collector) {
-        return collect(new StreamableCollector<>() {
+        return collect(collecting(collector));
+    }
+
+    private static <T, R, A> StreamableCollector<T, R> collecting(Collector<? super T, A, R> collector) {
+        return new StreamableCollector<>() {
             private A current = collector.supplier().get();
 
             @Override
@@ -295,12 +474,34 @@ public interface JavaStream<T> extends Streamable<T> {
             public R finish() {
                 return collector.finisher().apply(current);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, R> split() {
+                // Parts can only be combined after their finisher ran, if the finisher does nothing
+                if (!collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) return null;
+                return collecting(collector);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked") // The parts hold results of the accumulator
+            public R combine(R left, R right) {
+                return (R) collector.combiner().apply((A) left, (A) right);
+            }
+        };
     }
 
     default List<T> toList() {
-        return collect(new StreamableCollector<>() {
-            private List<T> elements = new ArrayList<>();
+        return collect(listing());
+    }
+
+    private static <T> StreamableCollector<T, List<T>> listing() {
+        return new StreamableCollector<>() {
+            private ArrayList<T> elements = new ArrayList<>();
+
+            @Override
+            public void exactSize(long size) {
+                if (size <= Integer.MAX_VALUE - 8) elements.ensureCapacity((int) size);
+            }
 
             @Override
             public boolean apply(T input) {
@@ -308,15 +509,42 @@ public interface JavaStream<T> extends Streamable<T> {
                 return false;
             }
 
+            @Override
+            @SuppressWarnings("unchecked") // The pipeline only passes elements of this stage
+            public boolean applyBatch(Object[] input, int length) {
+                elements.addAll(Arrays.asList((T[]) input).subList(0, length));
+                return false;
+            }
+
             @Override
             public List<T> finish() {
                 return elements;
             }
-        });
+
+            @Override
+            public int flags() {
+                return BATCH;
+            }
+
+            @Override
+            public StreamableCollector<T, List<T>> split() {
+                return listing();
+            }
+
+            @Override
+            public List<T> combine(List<T> left, List<T> right) {
+                left.addAll(right);
+                return left;
+            }
+        };
     }
 
     default Optional<T> min(Comparator<? super T> comparator) {
-        return collect(new StreamableCollector<>() {
+        return collect(minimum(comparator));
+    }
+
+    private static <T> StreamableCollector<T, Optional<T>> minimum(Comparator<? super T> comparator) {
+        return new StreamableCollector<>() {
             private T current = null;
 
             @Override
@@ -336,11 +564,27 @@ public interface JavaStream<T> extends Streamable<T> {
             public Optional<T> finish() {
                 return Optional.ofNullable(current);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return minimum(comparator);
+            }
+
+            @Override
+            public Optional<T> combine(Optional<T> left, Optional<T> right) {
+                if (left.isEmpty()) return right;
+                if (right.isEmpty()) return left;
+                return comparator.compare(left.get(), right.get()) > 0 ? right : left;
+            }
+        };
     }
 
     default Optional<T> max(Comparator<? super T> comparator) {
-        return collect(new StreamableCollector<>() {
+        return collect(maximum(comparator));
+    }
+
+    private static <T> StreamableCollector<T, Optional<T>> maximum(Comparator<? super T> comparator) {
+        return new StreamableCollector<>() {
             private T current = null;
 
             @Override
@@ -360,11 +604,34 @@ public interface JavaStream<T> extends Streamable<T> {
             public Optional<T> finish() {
                 return Optional.ofNullable(current);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return maximum(comparator);
+            }
+
+            @Override
+            public Optional<T> combine(Optional<T> left, Optional<T> right) {
+                if (left.isEmpty()) return right;
+                if (right.isEmpty()) return left;
+                return comparator.compare(left.get(), right.get()) < 0 ? right : left;
+            }
+        };
     }
 
+    /**
+     * Counts the elements without evaluating stages that cannot change their number. The {@link #map(Function)}
+     * and {@link #sorted(Comparator)} stages right before the count are skipped, so their functions are not called,
+     * and if the size of the source is known no element is taken from it at all. Like
+     * {@link java.util.stream.Stream#count()} this must not be relied upon for side effects, use
+     * {@link #forEach(java.util.function.Consumer)} or {@link #peek(java.util.function.Consumer)} for them.
+     */
     default long count() {
-        return collect(new StreamableCollector<>() {
+        return collect(counting());
+    }
+
+    private static <T> StreamableCollector<T, Long> counting() {
+        return new StreamableCollector<>() {
             private long count = 0;
 
             @Override
@@ -373,15 +640,45 @@ public interface JavaStream<T> extends Streamable<T> {
                 return false;
             }
 
+            @Override
+            public boolean applyBatch(Object[] input, int length) {
+                count += length;
+                return false;
+            }
+
+            @Override
+            public void exactSize(long size) {
+                count = size;
+            }
+
             @Override
             public Long finish() {
                 return count;
             }
-        });
+
+            @Override
+            public int flags() {
+                return BATCH | COUNTING;
+            }
+
+            @Override
+            public StreamableCollector<T, Long> split() {
+                return counting();
+            }
+
+            @Override
+            public Long combine(Long left, Long right) {
+                return left + right;
+            }
+        };
     }
 
     default boolean anyMatch(Predicate<? super T> predicate) {
-        return collect(new StreamableCollector<>() {
+        return collect(matching(predicate));
+    }
+
+    private static <T> StreamableCollector<T, Boolean> matching(Predicate<? super T> predicate) {
+        return new StreamableCollector<>() {
             private boolean anyMatch = false;
 
             @Override
@@ -397,7 +694,22 @@ public interface JavaStream<T> extends Streamable<T> {
             public Boolean finish() {
                 return anyMatch;
             }
-        });
+
+            @Override
+            public int flags() {
+                return SHORT_CIRCUIT;
+            }
+
+            @Override
+            public StreamableCollector<T, Boolean> split() {
+                return matching(predicate);
+            }
+
+            @Override
+            public Boolean combine(Boolean left, Boolean right) {
+                return left || right;
+            }
+        };
     }
 
     default boolean allMatch(Predicate<? super T> predicate) {
@@ -409,20 +721,7 @@ public interface JavaStream<T> extends Streamable<T> {
     }
 
     default Optional<T> findFirst() {
-        return collect(new StreamableCollector<>() {
-            private T current = null;
-
-            @Override
-            public boolean apply(T input) {
-                current = input;
-                return true;
-            }
-
-            @Override
-            public Optional<T> finish() {
-                return Optional.ofNullable(current);
-            }
-        });
+        return collect(new Operators.First<>());
     }
 
     default Optional<T> findAny() {
@@ -430,7 +729,11 @@ public interface JavaStream<T> extends Streamable<T> {
     }
 
     default Optional<T> findLast() {
-        return collect(new StreamableCollector<>() {
+        return collect(last());
+    }
+
+    private static <T> StreamableCollector<T, Optional<T>> last() {
+        return new StreamableCollector<>() {
             private T current = null;
 
             @Override
@@ -443,7 +746,17 @@ public interface JavaStream<T> extends Streamable<T> {
             public Optional<T> finish() {
                 return Optional.ofNullable(current);
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return last();
+            }
+
+            @Override
+            public Optional<T> combine(Optional<T> left, Optional<T> right) {
+                return right.isPresent() ? right : left;
+            }
+        };
     }
 
     default JavaStream<T> onClose(Runnable action) {
@@ -458,6 +771,11 @@ public interface JavaStream<T> extends Streamable<T> {
             public void finish(Consumer<T> next) {
             }
 
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
+
             @Override
             public void onClose() {
                 action.run();
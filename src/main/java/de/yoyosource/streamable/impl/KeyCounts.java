@@ -0,0 +1,121 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * The counters behind counts and countsBy, which are specialized by the first key like
+ * {@link DistinctKeys}: keys of one primitive wrapper class are counted in a {@link LongCountMap},
+ * constants of one enum in an array indexed by their ordinal and everything else in a
+ * {@link HashMap} of mutable counters, so that no element allocates a new {@link Long}.
+ */
+final class KeyCounts<K> {
+
+    private static final class Counter {
+        private long count;
+    }
+
+    // The class of the keys stored as longs or the enum of the ordinals
+    private Class<?> type;
+    private LongFunction<Object> boxing;
+    private LongCountMap longs;
+    private long[] ordinals;
+    private Map<Object, Counter> objects;
+
+    void increment(K key) {
+        if (longs != null) {
+            if (key != null && key.getClass() == type) {
+                longs.increment(Keys.unboxing(key));
+                return;
+            }
+        } else if (ordinals != null) {
+            if (type.isInstance(key)) {
+                ordinals[((Enum<?>) key).ordinal()]++;
+                return;
+            }
+        } else if (objects != null) {
+            objects.computeIfAbsent(key, k -> new Counter()).count++;
+            return;
+        } else {
+            specialize(key);
+            increment(key);
+            return;
+        }
+        generalize();
+        objects.computeIfAbsent(key, k -> new Counter()).count++;
+    }
+
+    private void specialize(Object key) {
+        if (key == null) {
+            objects = new HashMap<>();
+            return;
+        }
+        boxing = Keys.boxing(key.getClass());
+        Class<?> enumType = Keys.enumType(key);
+        if (boxing != null) {
+            type = key.getClass();
+            longs = new LongCountMap();
+        } else if (enumType != null) {
+            type = enumType;
+            ordinals = new long[enumType.getEnumConstants().length];
+        } else {
+            objects = new HashMap<>();
+        }
+    }
+
+    private void generalize() {
+        objects = new HashMap<>();
+        if (longs != null) {
+            longs.forEach((key, count) -> objects.computeIfAbsent(boxing.apply(key), k -> new Counter()).count = count);
+            longs = null;
+        }
+        if (ordinals != null) {
+            Object[] constants = type.getEnumConstants();
+            for (int i = 0; i < constants.length; i++) {
+                if (ordinals[i] != 0) objects.computeIfAbsent(constants[i], k -> new Counter()).count = ordinals[i];
+            }
+            ordinals = null;
+        }
+    }
+
+    long size() {
+        if (longs != null) return longs.size();
+        if (ordinals != null) {
+            long size = 0;
+            for (long count : ordinals) {
+                if (count != 0) size++;
+            }
+            return size;
+        }
+        return objects == null ? 0 : objects.size();
+    }
+
+    /**
+     * @return the counts by key, an {@link EnumMap} if all keys are constants of one enum
+     */
+    @SuppressWarnings("unchecked") // All keys were passed in as K
+    Map<K, Long> toMap() {
+        Map<Object, Long> result;
+        if (longs != null) {
+            Map<Object, Long> counts = new HashMap<>();
+            longs.forEach((key, count) -> counts.put(boxing.apply(key), count));
+            result = counts;
+        } else if (ordinals != null) {
+            result = Keys.enumMap(type);
+            Object[] constants = type.getEnumConstants();
+            for (int i = 0; i < constants.length; i++) {
+                if (ordinals[i] != 0) result.put(constants[i], ordinals[i]);
+            }
+        } else {
+            result = new HashMap<>();
+            if (objects != null) {
+                for (Map.Entry<Object, Counter> entry : objects.entrySet()) {
+                    result.put(entry.getKey(), entry.getValue().count);
+                }
+            }
+        }
+        return (Map<K, Long>) result;
+    }
+}
@@ -0,0 +1,51 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Classifies the keys of the hashing operators by the first key seen. Keys of one primitive wrapper
+ * class are stored as primitive longs and keys of one enum as their ordinal, until a key of another
+ * kind shows up and the operator falls back to a {@link java.util.HashMap} or {@link java.util.HashSet}.
+ */
+final class Keys {
+
+    private Keys() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @return the function boxing a long back into a key of the given class or null if keys of this class are not stored as longs
+     */
+    static LongFunction<Object> boxing(Class<?> type) {
+        if (type == Long.class) return Long::valueOf;
+        if (type == Integer.class) return value -> (int) value;
+        if (type == Short.class) return value -> (short) value;
+        if (type == Byte.class) return value -> (byte) value;
+        if (type == Character.class) return value -> (char) value;
+        return null;
+    }
+
+    /**
+     * @param key a key of a class for which {@link #boxing(Class)} is not null
+     */
+    static long unboxing(Object key) {
+        return key instanceof Character ? (Character) key : ((Number) key).longValue();
+    }
+
+    /**
+     * @return the enum declaring the key, also for constants with a body, or null if the key is no enum constant
+     */
+    static Class<?> enumType(Object key) {
+        return key instanceof Enum ? ((Enum<?>) key).getDeclaringClass() : null;
+    }
+
+    /**
+     * @return an empty {@link java.util.EnumMap} for the constants of an enum returned by {@link #enumType(Object)}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"}) // The enum is only known at runtime
+    static <K, V> Map<K, V> enumMap(Class<?> type) {
+        return new EnumMap(type);
+    }
+}
@@ -0,0 +1,72 @@
+package de.yoyosource.streamable.impl;
+
+/**
+ * Counts primitive long keys with open addressing and linear probing, the counts are stored in a
+ * parallel array instead of boxed values. The slot value 0 marks an empty slot, so the key 0 is
+ * counted on its own.
+ */
+final class LongCountMap {
+
+    interface Entries {
+        void accept(long key, long count);
+    }
+
+    private long[] keys = new long[16];
+    private long[] counts = new long[16];
+    // Number of keys in 'keys', without the key 0
+    private int size;
+    private long zeroCount;
+
+    void increment(long key) {
+        add(key, 1);
+    }
+
+    void add(long key, long count) {
+        if (key == 0) {
+            zeroCount += count;
+            return;
+        }
+        int mask = keys.length - 1;
+        int index = LongHashSet.hash(key) & mask;
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) {
+                counts[index] += count;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        counts[index] = count;
+        if (++size * 4L >= keys.length * 3L) resize();
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0) continue;
+            int index = LongHashSet.hash(key) & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            counts[index] = oldCounts[i];
+        }
+    }
+
+    long size() {
+        return size + (zeroCount != 0 ? 1 : 0);
+    }
+
+    void forEach(Entries action) {
+        if (zeroCount != 0) action.accept(0, zeroCount);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) action.accept(keys[i], counts[i]);
+        }
+    }
+}
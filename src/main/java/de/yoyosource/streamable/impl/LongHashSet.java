@@ -0,0 +1,66 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive longs with open addressing and linear probing, which allocates nothing per
+ * key. The slot value 0 marks an empty slot, so the key 0 is tracked on its own.
+ */
+final class LongHashSet {
+
+    private long[] keys = new long[16];
+    // Number of keys in 'keys', without the key 0
+    private int size;
+    private boolean containsZero;
+
+    static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * @return true if the key was not contained yet
+     */
+    boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) return false;
+            containsZero = true;
+            return true;
+        }
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) return false;
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        if (++size * 4L >= keys.length * 3L) resize();
+        return true;
+    }
+
+    private void resize() {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        int mask = keys.length - 1;
+        for (long key : old) {
+            if (key == 0) continue;
+            int index = hash(key) & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+        }
+    }
+
+    long size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    void forEach(LongConsumer action) {
+        if (containsZero) action.accept(0);
+        for (long key : keys) {
+            if (key != 0) action.accept(key);
+        }
+    }
+}
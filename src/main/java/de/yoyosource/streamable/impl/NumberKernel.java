@@ -0,0 +1,493 @@
+package de.yoyosource.streamable.impl;
+
+import de.yoyosource.streamable.StreamableCollector;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Optional;
+
+/**
+ * Aggregates numbers of a single type for {@link NumberStream}. The kernel is resolved once from
+ * the first element, afterwards every element is folded into primitive fields and the result is
+ * only boxed when it is requested.
+ */
+abstract class NumberKernel<T extends Number> {
+
+    @SuppressWarnings("unchecked") // The kernel is chosen by the class of the first number
+    static <T extends Number> NumberKernel<T> of(T first) {
+        Number number = first;
+        NumberKernel<?> kernel;
+        if (number instanceof Long) {
+            kernel = new LongKernel(number.longValue());
+        } else if (number instanceof Double) {
+            kernel = new DoubleKernel(number.doubleValue());
+        } else if (number instanceof Integer) {
+            kernel = new IntegerKernel(number.longValue());
+        } else if (number instanceof Float) {
+            kernel = new FloatKernel(number.doubleValue());
+        } else if (number instanceof Short) {
+            kernel = new ShortKernel(number.longValue());
+        } else if (number instanceof Byte) {
+            kernel = new ByteKernel(number.longValue());
+        } else if (number instanceof BigDecimal) {
+            kernel = new BigDecimalKernel((BigDecimal) number);
+        } else if (number instanceof BigInteger) {
+            kernel = new BigIntegerKernel((BigInteger) number);
+        } else {
+            throw new IllegalStateException("Unknown Number Type");
+        }
+        return (NumberKernel<T>) kernel;
+    }
+
+    abstract void add(T input);
+
+    /**
+     * Like {@link #add(Number)} but throws an {@link ArithmeticException} instead of overflowing.
+     */
+    abstract void addExact(T input);
+
+    /**
+     * Like {@link #add(Number)} but compensates the rounding error of floating point numbers.
+     */
+    abstract void addCompensated(T input);
+
+    /**
+     * @return true if the product can not change anymore
+     */
+    abstract boolean multiply(T input);
+
+    /**
+     * Like {@link #multiply(Number)} but throws an {@link ArithmeticException} instead of overflowing.
+     */
+    abstract boolean multiplyExact(T input);
+
+    abstract void min(T input);
+
+    abstract void max(T input);
+
+    abstract T sum();
+
+    abstract T product();
+
+    abstract T min();
+
+    abstract T max();
+
+    abstract T average(long count);
+
+    /**
+     * Base of the collectors of {@link NumberStream}, the subclasses only implement
+     * {@link #apply(Object)} so that every aggregation has its own call site into the kernel.
+     */
+    abstract static class Aggregation<T extends Number> implements StreamableCollector<T, Optional<T>> {
+        NumberKernel<T> kernel;
+
+        abstract T result(NumberKernel<T> kernel);
+
+        @Override
+        public Optional<T> finish() {
+            return kernel == null ? Optional.empty() : Optional.of(result(kernel));
+        }
+
+        @Override
+        public Optional<T> combine(Optional<T> left, Optional<T> right) {
+            StreamableCollector<T, Optional<T>> collector = split();
+            left.ifPresent(collector::apply);
+            right.ifPresent(collector::apply);
+            return collector.finish();
+        }
+    }
+
+    private abstract static class IntegralKernel<T extends Number> extends NumberKernel<T> {
+        private final long lower;
+        private final long upper;
+
+        private long sum = 0;
+        private long product = 1;
+        private long min;
+        private long max;
+
+        private IntegralKernel(long lower, long upper, long first) {
+            this.lower = lower;
+            this.upper = upper;
+            this.min = first;
+            this.max = first;
+        }
+
+        abstract T box(long value);
+
+        private long checked(long value) {
+            if (value < lower || value > upper) {
+                throw new ArithmeticException("integer overflow");
+            }
+            return value;
+        }
+
+        @Override
+        void add(T input) {
+            sum += input.longValue();
+        }
+
+        @Override
+        void addExact(T input) {
+            sum = checked(Math.addExact(sum, input.longValue()));
+        }
+
+        @Override
+        void addCompensated(T input) {
+            sum += input.longValue();
+        }
+
+        @Override
+        boolean multiply(T input) {
+            product *= input.longValue();
+            return product == 0;
+        }
+
+        @Override
+        boolean multiplyExact(T input) {
+            product = checked(Math.multiplyExact(product, input.longValue()));
+            return product == 0;
+        }
+
+        @Override
+        void min(T input) {
+            long value = input.longValue();
+            if (min > value) min = value;
+        }
+
+        @Override
+        void max(T input) {
+            long value = input.longValue();
+            if (max < value) max = value;
+        }
+
+        @Override
+        T sum() {
+            return box(sum);
+        }
+
+        @Override
+        T product() {
+            return box(product);
+        }
+
+        @Override
+        T min() {
+            return box(min);
+        }
+
+        @Override
+        T max() {
+            return box(max);
+        }
+
+        @Override
+        T average(long count) {
+            return box(sum / count);
+        }
+    }
+
+    private static final class ByteKernel extends IntegralKernel<Byte> {
+        private ByteKernel(long first) {
+            super(Byte.MIN_VALUE, Byte.MAX_VALUE, first);
+        }
+
+        @Override
+        Byte box(long value) {
+            return (byte) value;
+        }
+    }
+
+    private static final class ShortKernel extends IntegralKernel<Short> {
+        private ShortKernel(long first) {
+            super(Short.MIN_VALUE, Short.MAX_VALUE, first);
+        }
+
+        @Override
+        Short box(long value) {
+            return (short) value;
+        }
+    }
+
+    private static final class IntegerKernel extends IntegralKernel<Integer> {
+        private IntegerKernel(long first) {
+            super(Integer.MIN_VALUE, Integer.MAX_VALUE, first);
+        }
+
+        @Override
+        Integer box(long value) {
+            return (int) value;
+        }
+    }
+
+    private static final class LongKernel extends IntegralKernel<Long> {
+        private LongKernel(long first) {
+            super(Long.MIN_VALUE, Long.MAX_VALUE, first);
+        }
+
+        @Override
+        Long box(long value) {
+            return value;
+        }
+    }
+
+    private abstract static class FloatingKernel<T extends Number> extends NumberKernel<T> {
+        private double sum = 0;
+        private double compensation = 0;
+        private double product = 1;
+        private double min;
+        private double max;
+
+        private FloatingKernel(double first) {
+            this.min = first;
+            this.max = first;
+        }
+
+        abstract T box(double value);
+
+        @Override
+        void add(T input) {
+            sum += input.doubleValue();
+        }
+
+        @Override
+        void addExact(T input) {
+            sum += input.doubleValue();
+        }
+
+        @Override
+        void addCompensated(T input) {
+            // Neumaier's variant of the Kahan summation, which also handles inputs larger than the running sum
+            double value = input.doubleValue();
+            double next = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - next) + value;
+            } else {
+                compensation += (value - next) + sum;
+            }
+            sum = next;
+        }
+
+        @Override
+        boolean multiply(T input) {
+            // A zero product can still turn into NaN through infinity or NaN, so this never short-circuits
+            product *= input.doubleValue();
+            return false;
+        }
+
+        @Override
+        boolean multiplyExact(T input) {
+            return multiply(input);
+        }
+
+        @Override
+        void min(T input) {
+            double value = input.doubleValue();
+            if (min > value) min = value;
+        }
+
+        @Override
+        void max(T input) {
+            double value = input.doubleValue();
+            if (max < value) max = value;
+        }
+
+        @Override
+        T sum() {
+            return box(sum + compensation);
+        }
+
+        @Override
+        T product() {
+            return box(product);
+        }
+
+        @Override
+        T min() {
+            return box(min);
+        }
+
+        @Override
+        T max() {
+            return box(max);
+        }
+
+        @Override
+        T average(long count) {
+            return box((sum + compensation) / count);
+        }
+    }
+
+    private static final class FloatKernel extends FloatingKernel<Float> {
+        private FloatKernel(double first) {
+            super(first);
+        }
+
+        @Override
+        Float box(double value) {
+            return (float) value;
+        }
+    }
+
+    private static final class DoubleKernel extends FloatingKernel<Double> {
+        private DoubleKernel(double first) {
+            super(first);
+        }
+
+        @Override
+        Double box(double value) {
+            return value;
+        }
+    }
+
+    private static final class BigIntegerKernel extends NumberKernel<BigInteger> {
+        private BigInteger sum = BigInteger.ZERO;
+        // Balanced, as the cost of a multiplication grows with the size of the operands
+        private final BalancedReduction<BigInteger> product = new BalancedReduction<>(BigInteger::multiply);
+        private BigInteger min;
+        private BigInteger max;
+
+        private BigIntegerKernel(BigInteger first) {
+            this.min = first;
+            this.max = first;
+        }
+
+        @Override
+        void add(BigInteger input) {
+            sum = sum.add(input);
+        }
+
+        @Override
+        void addExact(BigInteger input) {
+            add(input);
+        }
+
+        @Override
+        void addCompensated(BigInteger input) {
+            add(input);
+        }
+
+        @Override
+        boolean multiply(BigInteger input) {
+            product.add(input);
+            return input.signum() == 0;
+        }
+
+        @Override
+        boolean multiplyExact(BigInteger input) {
+            return multiply(input);
+        }
+
+        @Override
+        void min(BigInteger input) {
+            if (min.compareTo(input) > 0) min = input;
+        }
+
+        @Override
+        void max(BigInteger input) {
+            if (max.compareTo(input) < 0) max = input;
+        }
+
+        @Override
+        BigInteger sum() {
+            return sum;
+        }
+
+        @Override
+        BigInteger product() {
+            return product.isEmpty() ? BigInteger.ONE : product.result();
+        }
+
+        @Override
+        BigInteger min() {
+            return min;
+        }
+
+        @Override
+        BigInteger max() {
+            return max;
+        }
+
+        @Override
+        BigInteger average(long count) {
+            return sum.divide(BigInteger.valueOf(count));
+        }
+    }
+
+    private static final class BigDecimalKernel extends NumberKernel<BigDecimal> {
+        private BigDecimal sum = BigDecimal.ZERO;
+        // Balanced, as the cost of a multiplication grows with the size of the operands
+        private final BalancedReduction<BigDecimal> product = new BalancedReduction<>(BigDecimal::multiply);
+        private BigDecimal min;
+        private BigDecimal max;
+
+        private BigDecimalKernel(BigDecimal first) {
+            this.min = first;
+            this.max = first;
+        }
+
+        @Override
+        void add(BigDecimal input) {
+            sum = sum.add(input);
+        }
+
+        @Override
+        void addExact(BigDecimal input) {
+            add(input);
+        }
+
+        @Override
+        void addCompensated(BigDecimal input) {
+            add(input);
+        }
+
+        @Override
+        boolean multiply(BigDecimal input) {
+            product.add(input);
+            return input.signum() == 0;
+        }
+
+        @Override
+        boolean multiplyExact(BigDecimal input) {
+            return multiply(input);
+        }
+
+        @Override
+        void min(BigDecimal input) {
+            if (min.compareTo(input) > 0) min = input;
+        }
+
+        @Override
+        void max(BigDecimal input) {
+            if (max.compareTo(input) < 0) max = input;
+        }
+
+        @Override
+        BigDecimal sum() {
+            return sum;
+        }
+
+        @Override
+        BigDecimal product() {
+            return product.isEmpty() ? BigDecimal.ONE : product.result();
+        }
+
+        @Override
+        BigDecimal min() {
+            return min;
+        }
+
+        @Override
+        BigDecimal max() {
+            return max;
+        }
+
+        @Override
+        BigDecimal average(long count) {
+            // The exact quotient does not terminate for most counts
+            return sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL128);
+        }
+    }
+}
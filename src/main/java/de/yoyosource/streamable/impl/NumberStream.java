@@ -3,8 +3,6 @@ package de.yoyosource.streamable.impl;
 import de.yoyosource.streamable.Streamable;
 import de.yoyosource.streamable.StreamableCollector;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.Optional;
 
 public interface NumberStream<T extends Number> extends Streamable<T> {
@@ -14,222 +12,213 @@ public interface NumberStream<T extends Number> extends Streamable<T> {
     }
 
     default Optional<T> sum() {
-        return collect(new StreamableCollector<>() {
-            private T value;
+        return collect(summing());
+    }
 
+    private static <T extends Number> StreamableCollector<T, Optional<T>> summing() {
+        return new NumberKernel.Aggregation<>() {
             @Override
             public boolean apply(T input) {
-                if (value == null) {
-                    value = input;
-                    return false;
-                }
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.add(input);
+                return false;
+            }
 
-                if (value instanceof Byte) {
-                    value = (T) (Object) ((Byte) value + (Byte) input);
-                } else if (value instanceof Short) {
-                    value = (T) (Object) ((Short) value + (Short) input);
-                } else if (value instanceof Integer) {
-                    value = (T) (Object) ((Integer) value + (Integer) input);
-                } else if (value instanceof Long) {
-                    value = (T) (Object) ((Long) value + (Long) input);
-                } else if (value instanceof Float) {
-                    value = (T) (Object) ((Float) value + (Float) input);
-                } else if (value instanceof Double) {
-                    value = (T) (Object) ((Double) value + (Double) input);
-                } else if (value instanceof BigDecimal) {
-                    value = (T) (((BigDecimal) value).add((BigDecimal) input));
-                } else if (value instanceof BigInteger) {
-                    value = (T) (((BigInteger) value).add((BigInteger) input));
-                }
+            @Override
+            T result(NumberKernel<T> kernel) {
+                return kernel.sum();
+            }
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return summing();
+            }
+        };
+    }
+
+    /**
+     * Like {@link #sum()} but throws an {@link ArithmeticException} if the sum overflows the number type.
+     */
+    default Optional<T> sumExact() {
+        return collect(summingExact());
+    }
+
+    private static <T extends Number> StreamableCollector<T, Optional<T>> summingExact() {
+        return new NumberKernel.Aggregation<>() {
+            @Override
+            public boolean apply(T input) {
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.addExact(input);
                 return false;
             }
 
             @Override
-            public Optional<T> finish() {
-                return Optional.ofNullable(value);
+            T result(NumberKernel<T> kernel) {
+                return kernel.sum();
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return summingExact();
+            }
+        };
+    }
+
+    /**
+     * Like {@link #sum()} but compensates the rounding errors of {@link Float} and {@link Double}
+     * elements with the Kahan-Babuska summation.
+     */
+    default Optional<T> sumCompensated() {
+        return collect(summingCompensated());
+    }
+
+    private static <T extends Number> StreamableCollector<T, Optional<T>> summingCompensated() {
+        return new NumberKernel.Aggregation<>() {
+            @Override
+            public boolean apply(T input) {
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.addCompensated(input);
+                return false;
+            }
+
+            @Override
+            T result(NumberKernel<T> kernel) {
+                return kernel.sum();
+            }
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return summingCompensated();
+            }
+        };
     }
 
     default Optional<T> product() {
-        return collect(new StreamableCollector<>() {
-            private T value;
+        return collect(multiplying());
+    }
 
+    private static <T extends Number> StreamableCollector<T, Optional<T>> multiplying() {
+        return new NumberKernel.Aggregation<>() {
             @Override
             public boolean apply(T input) {
-                if (value == null) {
-                    value = input;
-                    return false;
-                }
+                if (kernel == null) kernel = NumberKernel.of(input);
+                return kernel.multiply(input);
+            }
 
-                if (value instanceof Byte) {
-                    value = (T) (Object) ((Byte) value * (Byte) input);
-                    if (value == (Byte) (byte) 0) return true;
-                } else if (value instanceof Short) {
-                    value = (T) (Object) ((Short) value * (Short) input);
-                    if (value == (Short) (short) 0) return true;
-                } else if (value instanceof Integer) {
-                    value = (T) (Object) ((Integer) value * (Integer) input);
-                    if (value == (Integer) 0) return true;
-                } else if (value instanceof Long) {
-                    value = (T) (Object) ((Long) value * (Long) input);
-                    if (value == (Long) 0L) return true;
-                } else if (value instanceof Float) {
-                    value = (T) (Object) ((Float) value * (Float) input);
-                    if (value == (Float) 0f) return true;
-                } else if (value instanceof Double) {
-                    value = (T) (Object) ((Double) value * (Double) input);
-                    if (value == (Double) 0d) return true;
-                } else if (value instanceof BigDecimal) {
-                    value = (T) (((BigDecimal) value).multiply((BigDecimal) input));
-                    if (value.equals(BigDecimal.ZERO)) return true;
-                } else if (value instanceof BigInteger) {
-                    value = (T) (((BigInteger) value).multiply((BigInteger) input));
-                    if (value.equals(BigInteger.ZERO)) return true;
-                }
-                return false;
+            @Override
+            T result(NumberKernel<T> kernel) {
+                return kernel.product();
             }
 
             @Override
-            public Optional<T> finish() {
-                return Optional.ofNullable(value);
+            public int flags() {
+                return SHORT_CIRCUIT;
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return multiplying();
+            }
+        };
     }
 
-    default Optional<T> min() {
-        return collect(new StreamableCollector<>() {
-            private T value;
+    /**
+     * Like {@link #product()} but throws an {@link ArithmeticException} if the product overflows the number type.
+     */
+    default Optional<T> productExact() {
+        return collect(multiplyingExact());
+    }
 
+    private static <T extends Number> StreamableCollector<T, Optional<T>> multiplyingExact() {
+        return new NumberKernel.Aggregation<>() {
             @Override
             public boolean apply(T input) {
-                if (value == null) {
-                    value = input;
-                    return false;
-                }
+                if (kernel == null) kernel = NumberKernel.of(input);
+                return kernel.multiplyExact(input);
+            }
 
-                if (value instanceof Byte) {
-                    value = (Byte) value > (Byte) input ? input : value;
-                } else if (value instanceof Short) {
-                    value = (Short) value > (Short) input ? input : value;
-                } else if (value instanceof Integer) {
-                    value = (Integer) value > (Integer) input ? input : value;
-                } else if (value instanceof Long) {
-                    value = (Long) value > (Long) input ? input : value;
-                } else if (value instanceof Float) {
-                    value = (Float) value > (Float) input ? input : value;
-                } else if (value instanceof Double) {
-                    value = (Double) value > (Double) input ? input : value;
-                } else if (value instanceof BigDecimal) {
-                    value = ((BigDecimal) value).compareTo((BigDecimal) input) > 0 ? input : value;
-                } else if (value instanceof BigInteger) {
-                    value = ((BigInteger) value).compareTo((BigInteger) input) > 0 ? input : value;
-                }
+            @Override
+            T result(NumberKernel<T> kernel) {
+                return kernel.product();
+            }
+
+            @Override
+            public int flags() {
+                return SHORT_CIRCUIT;
+            }
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return multiplyingExact();
+            }
+        };
+    }
+
+    default Optional<T> min() {
+        return collect(minimum());
+    }
+
+    private static <T extends Number> StreamableCollector<T, Optional<T>> minimum() {
+        return new NumberKernel.Aggregation<>() {
+            @Override
+            public boolean apply(T input) {
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.min(input);
                 return false;
             }
 
             @Override
-            public Optional<T> finish() {
-                return Optional.ofNullable(value);
+            T result(NumberKernel<T> kernel) {
+                return kernel.min();
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return minimum();
+            }
+        };
     }
 
     default Optional<T> max() {
-        return collect(new StreamableCollector<>() {
-            private T value;
+        return collect(maximum());
+    }
 
+    private static <T extends Number> StreamableCollector<T, Optional<T>> maximum() {
+        return new NumberKernel.Aggregation<>() {
             @Override
             public boolean apply(T input) {
-                if (value == null) {
-                    value = input;
-                    return false;
-                }
-
-                if (value instanceof Byte) {
-                    value = (Byte) value < (Byte) input ? input : value;
-                } else if (value instanceof Short) {
-                    value = (Short) value < (Short) input ? input : value;
-                } else if (value instanceof Integer) {
-                    value = (Integer) value < (Integer) input ? input : value;
-                } else if (value instanceof Long) {
-                    value = (Long) value < (Long) input ? input : value;
-                } else if (value instanceof Float) {
-                    value = (Float) value < (Float) input ? input : value;
-                } else if (value instanceof Double) {
-                    value = (Double) value < (Double) input ? input : value;
-                } else if (value instanceof BigDecimal) {
-                    value = ((BigDecimal) value).compareTo((BigDecimal) input) < 0 ? input : value;
-                } else if (value instanceof BigInteger) {
-                    value = ((BigInteger) value).compareTo((BigInteger) input) < 0 ? input : value;
-                }
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.max(input);
                 return false;
             }
 
             @Override
-            public Optional<T> finish() {
-                return Optional.ofNullable(value);
+            T result(NumberKernel<T> kernel) {
+                return kernel.max();
             }
-        });
+
+            @Override
+            public StreamableCollector<T, Optional<T>> split() {
+                return maximum();
+            }
+        };
     }
 
     default Optional<T> average() {
-        return collect(new StreamableCollector<>() {
+        return collect(new NumberKernel.Aggregation<>() {
             private long count = 0;
-            private T value;
 
             @Override
             public boolean apply(T input) {
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.add(input);
                 count++;
-                if (value == null) {
-                    value = input;
-                    return false;
-                }
-
-                if (value instanceof Byte) {
-                    value = (Byte) value < (Byte) input ? input : value;
-                } else if (value instanceof Short) {
-                    value = (Short) value < (Short) input ? input : value;
-                } else if (value instanceof Integer) {
-                    value = (Integer) value < (Integer) input ? input : value;
-                } else if (value instanceof Long) {
-                    value = (Long) value < (Long) input ? input : value;
-                } else if (value instanceof Float) {
-                    value = (Float) value < (Float) input ? input : value;
-                } else if (value instanceof Double) {
-                    value = (Double) value < (Double) input ? input : value;
-                } else if (value instanceof BigDecimal) {
-                    value = ((BigDecimal) value).compareTo((BigDecimal) input) < 0 ? input : value;
-                } else if (value instanceof BigInteger) {
-                    value = ((BigInteger) value).compareTo((BigInteger) input) < 0 ? input : value;
-                }
                 return false;
             }
 
             @Override
-            public Optional<T> finish() {
-                if (count == 0) return Optional.empty();
-                if (value == null) return Optional.empty();
-                if (count == 1) return Optional.of(value);
-                if (value instanceof Byte) {
-                    return Optional.of((T) (Byte) (byte) ((Byte) value / count));
-                } else if (value instanceof Short) {
-                    return Optional.of((T) (Short) (short) ((Short) value / count));
-                } else if (value instanceof Integer) {
-                    return Optional.of((T) (Integer) (int) ((Integer) value / count));
-                } else if (value instanceof Long) {
-                    return Optional.of((T) (Long) ((Long) value / count));
-                } else if (value instanceof Float) {
-                    return Optional.of((T) (Float) ((Float) value / count));
-                } else if (value instanceof Double) {
-                    return Optional.of((T) (Double) ((Double) value / count));
-                } else if (value instanceof BigDecimal) {
-                    return Optional.of((T) ((BigDecimal) value).divide(BigDecimal.valueOf(count)));
-                } else if (value instanceof BigInteger) {
-                    return Optional.of((T) (((BigInteger) value).divide(BigInteger.valueOf(count))));
-                } else {
-                    throw new IllegalStateException("Unknown Number Type");
-                }
+            T result(NumberKernel<T> kernel) {
+                return kernel.average(count);
             }
         });
     }
@@ -237,60 +226,24 @@ public interface NumberStream<T extends Number> extends Streamable<T> {
     default SummaryStatistics<T> summaryStatistics() {
         return collect(new StreamableCollector<>() {
             private long count = 0;
-            private T sum;
-            private T min;
-            private T max;
+            private NumberKernel<T> kernel;
 
             @Override
             public boolean apply(T input) {
+                if (kernel == null) kernel = NumberKernel.of(input);
+                kernel.add(input);
+                kernel.min(input);
+                kernel.max(input);
                 count++;
-
-                if (sum == null) {
-                    sum = input;
-                    min = input;
-                    max = input;
-                    return false;
-                }
-
-                if (sum instanceof Byte) {
-                    sum = (T) (Object) ((Byte) sum + (Byte) input);
-                    min = (Byte) min > (Byte) input ? input : min;
-                    max = (Byte) max < (Byte) input ? input : max;
-                } else if (sum instanceof Short) {
-                    sum = (T) (Object) ((Short) sum + (Short) input);
-                    min = (Short) min > (Short) input ? input : min;
-                    max = (Short) max < (Short) input ? input : max;
-                } else if (sum instanceof Integer) {
-                    sum = (T) (Object) ((Integer) sum + (Integer) input);
-                    min = (Integer) min > (Integer) input ? input : min;
-                    max = (Integer) max < (Integer) input ? input : max;
-                } else if (sum instanceof Long) {
-                    sum = (T) (Object) ((Long) sum + (Long) input);
-                    min = (Long) min > (Long) input ? input : min;
-                    max = (Long) max < (Long) input ? input : max;
-                } else if (sum instanceof Float) {
-                    sum = (T) (Object) ((Float) sum + (Float) input);
-                    min = (Float) min > (Float) input ? input : min;
-                    max = (Float) max < (Float) input ? input : max;
-                } else if (sum instanceof Double) {
-                    sum = (T) (Object) ((Double) sum + (Double) input);
-                    min = (Double) min > (Double) input ? input : min;
-                    max = (Double) max < (Double) input ? input : max;
-                } else if (sum instanceof BigDecimal) {
-                    sum = (T) (((BigDecimal) sum).add((BigDecimal) input));
-                    min = ((BigDecimal) min).compareTo((BigDecimal) input) > 0 ? input : min;
-                    max = ((BigDecimal) max).compareTo((BigDecimal) input) < 0 ? input : max;
-                } else if (sum instanceof BigInteger) {
-                    sum = (T) (((BigInteger) sum).add((BigInteger) input));
-                    min = ((BigInteger) min).compareTo((BigInteger) input) > 0 ? input : min;
-                    max = ((BigInteger) max).compareTo((BigInteger) input) < 0 ? input : max;
-                }
                 return false;
             }
 
             @Override
             public SummaryStatistics<T> finish() {
-                return new SummaryStatistics<>(count, Optional.ofNullable(sum), Optional.ofNullable(min), Optional.ofNullable(max));
+                if (kernel == null) {
+                    return new SummaryStatistics<>(0, Optional.empty(), Optional.empty(), Optional.empty());
+                }
+                return new SummaryStatistics<>(count, Optional.of(kernel.sum()), Optional.of(kernel.min()), Optional.of(kernel.max()));
             }
         });
     }
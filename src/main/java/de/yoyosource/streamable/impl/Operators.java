@@ -0,0 +1,751 @@
+package de.yoyosource.streamable.impl;
+
+import de.yoyosource.streamable.BatchSink;
+import de.yoyosource.streamable.IndexedSource;
+import de.yoyosource.streamable.StreamableCollector;
+import de.yoyosource.streamable.StreamableGatherer;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The gatherers and collectors of the operators which the optimizer can rewrite. They describe
+ * themselves with the flags of {@link StreamableGatherer} and combine with each other through
+ * {@link StreamableGatherer#fuse(StreamableGatherer)} and {@link StreamableGatherer#fuse(StreamableCollector)}.
+ */
+final class Operators {
+
+    private Operators() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * A stateless operator which turns every element into at most one element.
+     */
+    abstract static class Elementwise<I, O> implements StreamableGatherer<I, O> {
+
+        // Returned by 'transform' for elements that are dropped
+        static final Object DROPPED = new Object();
+
+        /**
+         * @return the output for the given input or {@link #DROPPED}
+         */
+        abstract Object transform(Object input);
+
+        @Override
+        @SuppressWarnings("unchecked") // Only dropped elements are not of type O
+        public boolean apply(I input, Consumer<O> next) {
+            Object output = transform(input);
+            if (output != DROPPED) next.accept((O) output);
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // Only dropped elements are not of type O
+        public boolean applyBatch(Object[] input, int length, BatchSink<O> next) {
+            for (int i = 0; i < length; i++) {
+                Object output = transform(input[i]);
+                if (output != DROPPED) next.accept((O) output);
+            }
+            return false;
+        }
+
+        @Override
+        public void finish(Consumer<O> next) {
+        }
+
+        @Override
+        public StreamableGatherer<I, ?> fuse(StreamableGatherer<?, ?> next) {
+            if (!(next instanceof Elementwise)) return null;
+            return new Fused<>(this, (Elementwise<?, ?>) next);
+        }
+    }
+
+    static final class Mapping<I, O> extends Elementwise<I, O> {
+        private final Function<? super I, ? extends O> mapper;
+
+        Mapping(Function<? super I, ? extends O> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The pipeline only passes elements of this stage
+        Object transform(Object input) {
+            return mapper.apply((I) input);
+        }
+
+        @Override
+        public int flags() {
+            return STATELESS | BATCH | SIDE_EFFECT_FREE | ORDER_PRESERVING | SIZE_PRESERVING;
+        }
+
+        @Override
+        public String toString() {
+            return "map";
+        }
+    }
+
+    static final class Filtering<T> extends Elementwise<T, T> {
+        private final Predicate<? super T> predicate;
+
+        Filtering(Predicate<? super T> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The pipeline only passes elements of this stage
+        Object transform(Object input) {
+            return predicate.test((T) input) ? input : DROPPED;
+        }
+
+        @Override
+        public int flags() {
+            return STATELESS | BATCH | SIDE_EFFECT_FREE | ORDER_PRESERVING | SELECTING;
+        }
+
+        @Override
+        public String toString() {
+            return "filter";
+        }
+    }
+
+    static final class Peeking<T> extends Elementwise<T, T> {
+        private final Consumer<? super T> action;
+
+        Peeking(Consumer<? super T> action) {
+            this.action = action;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The pipeline only passes elements of this stage
+        Object transform(Object input) {
+            action.accept((T) input);
+            return input;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The pipeline only passes elements of this stage
+        public boolean applyBatch(Object[] input, int length, BatchSink<T> next) {
+            for (int i = 0; i < length; i++) {
+                action.accept((T) input[i]);
+            }
+            next.acceptAll(input, length);
+            return false;
+        }
+
+        @Override
+        public int flags() {
+            return STATELESS | BATCH | ORDER_PRESERVING | SIZE_PRESERVING | SELECTING;
+        }
+
+        @Override
+        public String toString() {
+            return "peek";
+        }
+    }
+
+    /**
+     * Adjacent {@link Elementwise} operators applied one after another in a single stage.
+     */
+    static final class Fused<I, O> extends Elementwise<I, O> {
+        private final Elementwise<?, ?>[] steps;
+        private final int flags;
+
+        private Fused(Elementwise<?, ?> first, Elementwise<?, ?> second) {
+            Elementwise<?, ?>[] head = first instanceof Fused ? ((Fused<?, ?>) first).steps : new Elementwise<?, ?>[]{first};
+            Elementwise<?, ?>[] tail = second instanceof Fused ? ((Fused<?, ?>) second).steps : new Elementwise<?, ?>[]{second};
+            steps = Arrays.copyOf(head, head.length + tail.length);
+            System.arraycopy(tail, 0, steps, head.length, tail.length);
+            flags = first.flags() & second.flags();
+        }
+
+        @Override
+        Object transform(Object input) {
+            for (Elementwise<?, ?> step : steps) {
+                input = step.transform(input);
+                if (input == DROPPED) return DROPPED;
+            }
+            return input;
+        }
+
+        @Override
+        public int flags() {
+            return flags;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner("+");
+            for (Elementwise<?, ?> step : steps) {
+                joiner.add(step.toString());
+            }
+            return joiner.toString();
+        }
+    }
+
+    static final class Skipping<T> implements StreamableGatherer<T, T> {
+        private final long skip;
+        private long elementsLeft;
+
+        Skipping(long skip) {
+            this.skip = skip;
+            this.elementsLeft = skip;
+        }
+
+        @Override
+        public boolean apply(T input, Consumer<T> next) {
+            if (elementsLeft > 0) {
+                elementsLeft--;
+            } else {
+                next.accept(input);
+            }
+            return false;
+        }
+
+        @Override
+        public void finish(Consumer<T> next) {
+        }
+
+        @Override
+        public int flags() {
+            return SIDE_EFFECT_FREE | ORDER_PRESERVING;
+        }
+
+        @Override
+        public StreamableGatherer<T, ?> fuse(StreamableGatherer<?, ?> next) {
+            if (!(next instanceof Skipping)) return null;
+            long other = ((Skipping<?>) next).skip;
+            return new Skipping<>(skip > Long.MAX_VALUE - other ? Long.MAX_VALUE : skip + other);
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            // The elements are passed on unchanged, only fewer of them
+            return characteristics & (Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean redundant(int characteristics, Comparator<?> comparator) {
+            return skip == 0;
+        }
+
+        @Override
+        public Spliterator<?> slice(IndexedSource source) {
+            return source.slice(skip, Long.MAX_VALUE, 1);
+        }
+
+        @Override
+        public String toString() {
+            return "skip";
+        }
+    }
+
+    static final class Limiting<T> implements StreamableGatherer<T, T> {
+        private final long maxSize;
+        private long elementsLeft;
+
+        Limiting(long maxSize) {
+            this.maxSize = maxSize;
+            this.elementsLeft = maxSize;
+        }
+
+        @Override
+        public boolean apply(T input, Consumer<T> next) {
+            if (elementsLeft == 0) return true;
+            next.accept(input);
+            return --elementsLeft == 0;
+        }
+
+        @Override
+        public void finish(Consumer<T> next) {
+        }
+
+        @Override
+        public int flags() {
+            return SHORT_CIRCUIT | SIDE_EFFECT_FREE | ORDER_PRESERVING;
+        }
+
+        @Override
+        public StreamableGatherer<T, ?> fuse(StreamableGatherer<?, ?> next) {
+            if (!(next instanceof Limiting)) return null;
+            return new Limiting<>(Math.min(maxSize, ((Limiting<?>) next).maxSize));
+        }
+
+        @Override
+        public Spliterator<?> slice(IndexedSource source) {
+            return source.slice(0, maxSize, 1);
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            // The elements are passed on unchanged, only fewer of them
+            return characteristics & (Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public String toString() {
+            return "limit";
+        }
+    }
+
+    static final class Distinct<T> implements StreamableGatherer<T, T> {
+        private final DistinctKeys elements = new DistinctKeys();
+
+        @Override
+        public boolean apply(T input, Consumer<T> next) {
+            if (elements.add(input)) next.accept(input);
+            return false;
+        }
+
+        @Override
+        public void finish(Consumer<T> next) {
+        }
+
+        @Override
+        public long buffered() {
+            return elements.size();
+        }
+
+        @Override
+        public int flags() {
+            return SIDE_EFFECT_FREE | ORDER_PRESERVING | SELECTING;
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            return (characteristics & (Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL)) | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public boolean redundant(int characteristics, Comparator<?> comparator) {
+            return (characteristics & Spliterator.DISTINCT) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "distinct";
+        }
+    }
+
+    /**
+     * Drops the elements a {@link BloomFilter} already contains. Only a filter created for this stage
+     * is known to the optimizer, a filter of the caller has to see exactly the elements reaching the
+     * stage, so the stage must neither be removed nor have filters moved in front of it.
+     */
+    static final class ApproximateDistinct<T> implements StreamableGatherer<T, T> {
+        private final BloomFilter filter;
+        private final boolean owned;
+
+        /**
+         * @param owned whether the filter was created for this stage and is not visible to the caller
+         */
+        ApproximateDistinct(BloomFilter filter, boolean owned) {
+            this.filter = filter;
+            this.owned = owned;
+        }
+
+        @Override
+        public boolean apply(T input, Consumer<T> next) {
+            if (filter.put(input)) next.accept(input);
+            return false;
+        }
+
+        @Override
+        public void finish(Consumer<T> next) {
+        }
+
+        @Override
+        public int flags() {
+            return owned ? SIDE_EFFECT_FREE | ORDER_PRESERVING | SELECTING : ORDER_PRESERVING;
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            if (!owned) return StreamableGatherer.super.characteristics(characteristics);
+            return (characteristics & (Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL)) | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public boolean redundant(int characteristics, Comparator<?> comparator) {
+            // On distinct input the filter could only drop false positives
+            return owned && (characteristics & Spliterator.DISTINCT) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "distinctApprox";
+        }
+    }
+
+    /**
+     * A flat gatherer which emits all elements sorted with a stable sort in {@link #finish(Consumer)}.
+     * With an {@link ElementCodec} at most {@code maxInMemory} elements are kept on the heap, every
+     * time the limit is reached they are sorted and spilled to a {@link SpillFile} as one run. The
+     * runs are merged lazily while the output is iterated. A merge reads at most {@value #MERGE_FAN_IN}
+     * runs at once, with more runs consecutive groups of them are first merged into longer runs.
+     */
+    static final class Sorting<T> implements StreamableGatherer<T, Iterable<T>> {
+        // Runs read at once by one merge, every open run holds a file and its buffer
+        private static final int MERGE_FAN_IN = 64;
+
+        private final Comparator<? super T> comparator;
+        private final int maxInMemory;
+        private final ElementCodec<T> codec;
+        private final List<T> elements = new ArrayList<>();
+        private final List<SpillFile<T>> runs = new ArrayList<>();
+
+        /**
+         * @param comparator the comparator or null for the natural order
+         */
+        Sorting(Comparator<? super T> comparator) {
+            this(comparator, Integer.MAX_VALUE, null);
+        }
+
+        /**
+         * @param comparator the comparator or null for the natural order
+         * @param codec the codec of the spilled runs or null to keep all elements in memory
+         */
+        Sorting(Comparator<? super T> comparator, int maxInMemory, ElementCodec<T> codec) {
+            this.comparator = comparator == Comparator.naturalOrder() ? null : comparator;
+            this.maxInMemory = codec == null ? Integer.MAX_VALUE : maxInMemory;
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean apply(T input, Consumer<Iterable<T>> next) {
+            elements.add(input);
+            if (elements.size() >= maxInMemory) spill();
+            return false;
+        }
+
+        private void spill() {
+            elements.sort(comparator);
+            SpillFile<T> run = new SpillFile<>(codec);
+            runs.add(run);
+            for (T element : elements) {
+                run.write(element);
+            }
+            run.complete();
+            elements.clear();
+        }
+
+        /**
+         * Merges groups of consecutive runs until the last merge, which also reads the elements in
+         * memory, reads at most {@link #MERGE_FAN_IN} runs. A merged run takes the place of its group,
+         * so that equal elements stay in encounter order.
+         */
+        private void mergeRuns() {
+            int from = 0;
+            while (runs.size() >= MERGE_FAN_IN) {
+                if (runs.size() - from < 2) from = 0;
+                List<SpillFile<T>> group = runs.subList(from, Math.min(from + MERGE_FAN_IN, runs.size()));
+                SpillFile<T> merged = new SpillFile<>(codec);
+                try {
+                    Merge<T> merge = new Merge<>(group, Collections.emptyList(), orNatural(comparator));
+                    while (merge.hasNext()) {
+                        merged.write(merge.next());
+                    }
+                    merged.complete();
+                } catch (RuntimeException e) {
+                    merged.close();
+                    throw e;
+                }
+                for (SpillFile<T> run : group) {
+                    run.close();
+                }
+                group.clear();
+                runs.add(from++, merged);
+            }
+        }
+
+        @Override
+        public void finish(Consumer<Iterable<T>> next) {
+            elements.sort(comparator);
+            if (runs.isEmpty()) {
+                next.accept(elements);
+            } else {
+                mergeRuns();
+                next.accept(() -> new Merge<>(runs, elements, orNatural(comparator)));
+            }
+        }
+
+        @Override
+        public void onClose() {
+            for (SpillFile<T> run : runs) {
+                run.close();
+            }
+            runs.clear();
+        }
+
+        @Override
+        public long buffered() {
+            return elements.size();
+        }
+
+        @Override
+        public int flags() {
+            return SIDE_EFFECT_FREE | SIZE_PRESERVING | SELECTING;
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            return (characteristics & (Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.NONNULL)) | Spliterator.SORTED | Spliterator.ORDERED;
+        }
+
+        @Override
+        public Comparator<?> comparator(Comparator<?> comparator) {
+            return this.comparator;
+        }
+
+        @Override
+        public boolean redundant(int characteristics, Comparator<?> comparator) {
+            return (characteristics & Spliterator.SORTED) != 0 && Objects.equals(this.comparator, comparator);
+        }
+
+        @Override
+        public StreamableGatherer<T, ?> fuse(StreamableGatherer<?, ?> next) {
+            // The bounded heap of the limit has to fit into the memory budget as well
+            if (!(next instanceof Limiting) || ((Limiting<?>) next).maxSize > maxInMemory) return null;
+            return new TopK<>(comparator, ((Limiting<?>) next).maxSize);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The minimum is the first element of the sorted stream
+        public <R> StreamableCollector<T, R> fuse(StreamableCollector<?, R> collector) {
+            if (!(collector instanceof First)) return null;
+            return (StreamableCollector<T, R>) new Minimum<T>(orNatural(comparator));
+        }
+
+        @Override
+        public String toString() {
+            return "sorted";
+        }
+    }
+
+    /**
+     * A k-way merge of sorted runs, which reads every run only as far as the output is consumed.
+     * Elements that compare equal are taken from the earlier run first, which keeps the sort stable.
+     */
+    private static final class Merge<T> implements Iterator<T> {
+        private final PriorityQueue<Head<T>> heads;
+
+        private Merge(List<SpillFile<T>> runs, List<T> last, Comparator<? super T> comparator) {
+            Comparator<Head<T>> order = (a, b) -> {
+                int result = comparator.compare(a.element, b.element);
+                return result != 0 ? result : Integer.compare(a.run, b.run);
+            };
+            heads = new PriorityQueue<>(runs.size() + 1, order);
+            for (int i = 0; i < runs.size(); i++) {
+                advance(new Head<>(runs.get(i).read(), i));
+            }
+            advance(new Head<>(last.iterator(), runs.size()));
+        }
+
+        private void advance(Head<T> head) {
+            if (!head.source.hasNext()) return;
+            head.element = head.source.next();
+            heads.add(head);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head<T> head = heads.poll();
+            if (head == null) throw new NoSuchElementException();
+            T element = head.element;
+            advance(head);
+            return element;
+        }
+
+        private static final class Head<T> {
+            private final Iterator<T> source;
+            private final int run;
+            private T element;
+
+            private Head(Iterator<T> source, int run) {
+                this.source = source;
+                this.run = run;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked") // Without a comparator the elements are comparable
+    private static <T> Comparator<? super T> orNatural(Comparator<? super T> comparator) {
+        return comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+    }
+
+    /**
+     * A sorted gatherer followed by a limit, which only keeps the {@code k} smallest elements in a
+     * bounded heap. Elements that compare equal keep their encounter order like in a stable sort.
+     */
+    static final class TopK<T> implements StreamableGatherer<T, Iterable<T>> {
+        // The comparator of the sorted gatherer, null for the natural order
+        private final Comparator<? super T> sortedBy;
+        private final Comparator<? super T> comparator;
+        private final long k;
+        // The root is the greatest element kept, the one that is dropped next
+        private final PriorityQueue<Entry<T>> heap;
+        private long index;
+
+        private TopK(Comparator<? super T> sortedBy, long k) {
+            this.sortedBy = sortedBy;
+            this.comparator = orNatural(sortedBy);
+            this.k = k;
+            Comparator<Entry<T>> order = (a, b) -> {
+                int result = comparator.compare(a.element, b.element);
+                return result != 0 ? result : Long.compare(a.index, b.index);
+            };
+            this.heap = new PriorityQueue<>((int) Math.min(k + 1, 16), order.reversed());
+        }
+
+        @Override
+        public boolean apply(T input, Consumer<Iterable<T>> next) {
+            if (k == 0) return true;
+            long current = index++;
+            if (heap.size() < k) {
+                heap.add(new Entry<>(input, current));
+            } else if (comparator.compare(input, heap.peek().element) < 0) {
+                heap.poll();
+                heap.add(new Entry<>(input, current));
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The array only holds elements of type T
+        public void finish(Consumer<Iterable<T>> next) {
+            Object[] elements = new Object[heap.size()];
+            for (int i = elements.length - 1; i >= 0; i--) {
+                elements[i] = heap.poll().element;
+            }
+            next.accept((List<T>) Arrays.asList(elements));
+        }
+
+        @Override
+        public long buffered() {
+            return heap.size();
+        }
+
+        @Override
+        public int flags() {
+            return SIDE_EFFECT_FREE;
+        }
+
+        @Override
+        public int characteristics(int characteristics) {
+            return (characteristics & (Spliterator.DISTINCT | Spliterator.NONNULL)) | Spliterator.SORTED | Spliterator.ORDERED;
+        }
+
+        @Override
+        public Comparator<?> comparator(Comparator<?> comparator) {
+            return sortedBy;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // The minimum is the first element of the sorted stream
+        public <R> StreamableCollector<T, R> fuse(StreamableCollector<?, R> collector) {
+            if (k == 0 || !(collector instanceof First)) return null;
+            return (StreamableCollector<T, R>) new Minimum<T>(comparator);
+        }
+
+        @Override
+        public String toString() {
+            return "sorted+limit";
+        }
+
+        private static final class Entry<T> {
+            private final T element;
+            private final long index;
+
+            private Entry(T element, long index) {
+                this.element = element;
+                this.index = index;
+            }
+        }
+    }
+
+    static final class First<T> implements StreamableCollector<T, Optional<T>> {
+        private T current = null;
+
+        @Override
+        public boolean apply(T input) {
+            current = input;
+            return true;
+        }
+
+        @Override
+        public Optional<T> finish() {
+            return Optional.ofNullable(current);
+        }
+
+        @Override
+        public int flags() {
+            return SHORT_CIRCUIT;
+        }
+
+        @Override
+        public StreamableCollector<T, Optional<T>> split() {
+            return new First<>();
+        }
+
+        @Override
+        public Optional<T> combine(Optional<T> left, Optional<T> right) {
+            return left.isPresent() ? left : right;
+        }
+
+        @Override
+        public String toString() {
+            return "first";
+        }
+    }
+
+    /**
+     * The first of the smallest elements, which is what a stable sort followed by {@link First} finds.
+     */
+    static final class Minimum<T> implements StreamableCollector<T, Optional<T>> {
+        private final Comparator<? super T> comparator;
+        private boolean found;
+        private T current;
+
+        private Minimum(Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public boolean apply(T input) {
+            if (!found || comparator.compare(input, current) < 0) {
+                found = true;
+                current = input;
+            }
+            return false;
+        }
+
+        @Override
+        public Optional<T> finish() {
+            return Optional.ofNullable(current);
+        }
+
+        @Override
+        public StreamableCollector<T, Optional<T>> split() {
+            return new Minimum<>(comparator);
+        }
+
+        @Override
+        public Optional<T> combine(Optional<T> left, Optional<T> right) {
+            if (left.isEmpty()) return right;
+            if (right.isEmpty()) return left;
+            return comparator.compare(right.get(), left.get()) < 0 ? right : left;
+        }
+
+        @Override
+        public String toString() {
+            return "sorted+first";
+        }
+    }
+}
@@ -26,6 +26,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             @Override
             public void finish(Consumer<Optional<T>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(presentType());
     }
 
@@ -41,6 +46,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             public void finish(Consumer<Optional<T>> next) {
 
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(OptionalStream.type());
     }
 
@@ -55,6 +65,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             @Override
             public void finish(Consumer<Optional<U>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(OptionalStream.type());
     }
 
@@ -69,6 +84,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             @Override
             public void finish(Consumer<Optional<U>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(OptionalStream.type());
     }
 
@@ -83,6 +103,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             @Override
             public void finish(Consumer<Optional<T>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(OptionalStream.type());
     }
 
@@ -97,6 +122,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             @Override
             public void finish(Consumer<T> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(Streamable.type());
     }
 
@@ -112,6 +142,11 @@ public interface OptionalBaseStream<T> extends Streamable<Optional<T>> {
             public void finish(Consumer<T> next) {
 
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(Streamable.type());
     }
 }
@@ -21,6 +21,11 @@ public interface OptionalPresentStream<T> extends OptionalBaseStream<T> {
             public void finish(Consumer<T> next) {
 
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(Streamable.type());
     }
 
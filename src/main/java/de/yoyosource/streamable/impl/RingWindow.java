@@ -0,0 +1,72 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.*;
+
+/**
+ * The last elements of a sliding window kept in a ring buffer, so that adding an element to a full
+ * window overwrites the oldest one in O(1) instead of shifting all others. The window can be copied
+ * into a list of its exact size in one pass or read through a view without any copy, which always
+ * shows the current content of the window.
+ */
+final class RingWindow<T> {
+
+    private final Object[] elements;
+    private int start;
+    private int size;
+    private final List<T> view = new View();
+
+    RingWindow(int capacity) {
+        this.elements = new Object[capacity];
+    }
+
+    void add(T element) {
+        int index = start + size;
+        if (index >= elements.length) index -= elements.length;
+        elements[index] = element;
+        if (size < elements.length) {
+            size++;
+        } else if (++start == elements.length) {
+            start = 0;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked") // The elements are only ever of type T
+    List<T> copy() {
+        List<T> copy = new ArrayList<>(size);
+        int head = Math.min(size, elements.length - start);
+        for (int i = start; i < start + head; i++) {
+            copy.add((T) elements[i]);
+        }
+        for (int i = 0; i < size - head; i++) {
+            copy.add((T) elements[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * @return a read-only list of the elements in the window, which changes with every added element
+     */
+    List<T> view() {
+        return view;
+    }
+
+    private final class View extends AbstractList<T> implements RandomAccess {
+        @Override
+        @SuppressWarnings("unchecked") // The elements are only ever of type T
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            index += start;
+            if (index >= elements.length) index -= elements.length;
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package de.yoyosource.streamable.impl;
+
+import java.util.*;
+
+/**
+ * The Space-Saving sketch of the most frequent keys, which keeps a fixed number of counters. A key
+ * without a counter takes over the counter with the smallest count once all counters are used, so
+ * its count is overestimated by at most that smallest count, which is never more than
+ * {@code total / capacity}. Every key occurring more often than that is guaranteed to have a counter.
+ *
+ * @see AdvancedStream#topFrequentBy(java.util.function.Function, int, int, long)
+ */
+public final class SpaceSaving<K> {
+
+    public static final class Item<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+
+        private Item(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return the estimated count, which is never less than the real count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the maximum overestimation of the count
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the count the key occurred at least
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            Item<?> item = (Item<?>) o;
+            return count == item.count && error == item.error && Objects.equals(key, item.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, count, error);
+        }
+
+        @Override
+        public String toString() {
+            // The real count lies between the guaranteed count and the estimated one
+            return key + "=" + count + (error != 0 ? " (>= " + getGuaranteedCount() + ")" : "");
+        }
+    }
+
+    private static final class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int index;
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    // A binary min heap by count, so that the root is the counter taken over next
+    private final Counter<K>[] heap;
+    private int size;
+    private long total;
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // Generic arrays cannot be created
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be a positive number");
+        }
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+    }
+
+    public void add(K key) {
+        total++;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter<>();
+            counter.key = key;
+            counter.count = 1;
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+        counter = heap[0];
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count;
+        counter.count++;
+        counters.put(key, counter);
+        siftDown(0);
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) break;
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (counter.count <= heap[child].count) break;
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<K> counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of keys added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the {@code k} keys with the highest estimated counts, the highest first
+     */
+    public List<Item<K>> top(int k) {
+        List<Item<K>> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Counter<K> counter = heap[i];
+            items.add(new Item<>(counter.key, counter.count, counter.error));
+        }
+        items.sort(Comparator.<Item<K>>comparingLong(Item::getCount).reversed().thenComparingLong(Item::getError));
+        return items.size() > k ? new ArrayList<>(items.subList(0, k)) : items;
+    }
+}
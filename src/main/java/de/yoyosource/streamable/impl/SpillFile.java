@@ -0,0 +1,114 @@
+package de.yoyosource.streamable.impl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A temporary file of elements written with an {@link ElementCodec}, which is first written
+ * completely and then read back once. Between {@link #complete()} and {@link #read()} the file is
+ * not open, so that many files can wait to be read. The files are created in {@code -Dstreamable.spill.directory}
+ * or the default temporary directory, and deleted by {@link #close()}.
+ */
+final class SpillFile<T> implements Closeable {
+
+    private static final String DIRECTORY = System.getProperty("streamable.spill.directory");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ElementCodec<T> codec;
+    private final Path path;
+    private DataOutputStream output;
+    private DataInputStream input;
+    private long size;
+
+    SpillFile(ElementCodec<T> codec) {
+        this.codec = codec;
+        try {
+            path = DIRECTORY == null ? Files.createTempFile("streamable", ".spill") : Files.createTempFile(Paths.get(DIRECTORY), "streamable", ".spill");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(T element) {
+        try {
+            codec.write(element, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size++;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Finishes writing and closes the file until it is read.
+     */
+    void complete() {
+        if (output == null) return;
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            output = null;
+        }
+    }
+
+    /**
+     * Finishes writing and reads the elements back in the order they were written. The file is
+     * closed once the iterator is exhausted.
+     */
+    Iterator<T> read() {
+        complete();
+        try {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Iterator<>() {
+            private long left = size;
+
+            @Override
+            public boolean hasNext() {
+                return left > 0;
+            }
+
+            @Override
+            public T next() {
+                if (left == 0) throw new NoSuchElementException();
+                try {
+                    T element = codec.read(input);
+                    if (--left == 0) close();
+                    return element;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (output != null) output.close();
+            if (input != null) input.close();
+            output = null;
+            input = null;
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
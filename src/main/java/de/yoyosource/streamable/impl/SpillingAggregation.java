@@ -0,0 +1,295 @@
+package de.yoyosource.streamable.impl;
+
+import de.yoyosource.streamable.StreamableGatherer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A hash aggregation with a memory budget, which emits one entry per key. Elements are aggregated
+ * in a {@link HashMap} until the budget is reached, then the whole map is written as records to
+ * {@value #PARTITIONS} {@link SpillFile}s chosen by the hash of the key and cleared. Once all
+ * elements are known every partition is read back and aggregated on its own, so only the keys of
+ * one partition are on the heap at the same time. A partition that exceeds the budget again is
+ * partitioned once more with a different hash seed, until it fits. Only when all of its keys land
+ * in the same partition again, which happens for a single key or keys with the same
+ * {@link Object#hashCode()}, the partition is aggregated in memory regardless of the budget.
+ *
+ * @param <R> the type of the records written to the partitions
+ */
+abstract class SpillingAggregation<T, K, V, R> implements StreamableGatherer<T, Iterable<Map.Entry<K, V>>> {
+
+    static final int PARTITIONS = 64;
+
+    private final int maxInMemory;
+    private Map<K, V> data = new HashMap<>();
+    // The part of the memory budget used by 'data'
+    private long buffered;
+    // The partitions being written, null until the budget is exceeded the first time
+    private SpillFile<R>[] partitions;
+    // Partitions that are not aggregated yet, in the order they are read back
+    private final Deque<Partition<R>> pending = new ArrayDeque<>();
+
+    SpillingAggregation(int maxInMemory) {
+        this.maxInMemory = maxInMemory;
+    }
+
+    abstract ElementCodec<R> codec();
+
+    /**
+     * @return the part of the memory budget used additionally
+     */
+    abstract long accumulate(Map<K, V> data, T input);
+
+    abstract void spill(K key, V value, Consumer<R> partition);
+
+    /**
+     * @return the part of the memory budget used additionally
+     */
+    abstract long restore(Map<K, V> data, R record);
+
+    @Override
+    public boolean apply(T input, Consumer<Iterable<Map.Entry<K, V>>> next) {
+        buffered += accumulate(data, input);
+        if (buffered >= maxInMemory) {
+            if (partitions == null) partitions = newPartitions();
+            spill(data, partitions, 0);
+            data = new HashMap<>();
+            buffered = 0;
+        }
+        return false;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // Generic arrays cannot be created
+    private static <R> SpillFile<R>[] newPartitions() {
+        return new SpillFile[PARTITIONS];
+    }
+
+    /**
+     * Writes the entries of {@code data} to the partitions chosen by the hash of their key with the seed {@code level}.
+     */
+    private void spill(Map<K, V> data, SpillFile<R>[] partitions, int level) {
+        for (Map.Entry<K, V> entry : data.entrySet()) {
+            int index = partition(entry.getKey(), level);
+            if (partitions[index] == null) partitions[index] = new SpillFile<>(codec());
+            spill(entry.getKey(), entry.getValue(), partitions[index]::write);
+        }
+    }
+
+    private static int partition(Object key, int level) {
+        // The finalizer of MurmurHash3, so that every level spreads the keys of one partition of the level before
+        int hash = Objects.hashCode(key) + level * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash & (PARTITIONS - 1);
+    }
+
+    /**
+     * Adds the written partitions in front of the pending ones and closes them until they are read.
+     *
+     * @return the number of partitions added
+     */
+    private int enqueue(SpillFile<R>[] partitions, int level, boolean splittable) {
+        int added = 0;
+        for (int i = PARTITIONS - 1; i >= 0; i--) {
+            if (partitions[i] == null) continue;
+            partitions[i].complete();
+            pending.addFirst(new Partition<>(partitions[i], level, splittable));
+            partitions[i] = null;
+            added++;
+        }
+        return added;
+    }
+
+    @Override
+    public void finish(Consumer<Iterable<Map.Entry<K, V>>> next) {
+        if (partitions == null) {
+            next.accept(data.entrySet());
+            return;
+        }
+        spill(data, partitions, 0);
+        data = new HashMap<>();
+        buffered = 0;
+        enqueue(partitions, 0, true);
+        next.accept(Partitions::new);
+    }
+
+    @Override
+    public long buffered() {
+        return buffered;
+    }
+
+    @Override
+    public void onClose() {
+        if (partitions != null) {
+            for (SpillFile<R> partition : partitions) {
+                if (partition != null) partition.close();
+            }
+        }
+        for (Partition<R> partition : pending) {
+            partition.file.close();
+        }
+        pending.clear();
+    }
+
+    private static final class Partition<R> {
+        private final SpillFile<R> file;
+        private final int level;
+        // False if partitioning the records of the file again put all of them into this file
+        private final boolean splittable;
+
+        private Partition(SpillFile<R> file, int level, boolean splittable) {
+            this.file = file;
+            this.level = level;
+            this.splittable = splittable;
+        }
+    }
+
+    /**
+     * Aggregates the next partition once the entries of the previous one are consumed.
+     */
+    private final class Partitions implements Iterator<Map.Entry<K, V>> {
+        private Iterator<Map.Entry<K, V>> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !pending.isEmpty()) {
+                Partition<R> partition = pending.peekFirst();
+                Map<K, V> data = new HashMap<>();
+                long buffered = 0;
+                SpillFile<R>[] split = null;
+                Iterator<R> records = partition.file.read();
+                while (records.hasNext()) {
+                    buffered += restore(data, records.next());
+                    if (buffered >= maxInMemory && partition.splittable) {
+                        if (split == null) partitions = split = newPartitions();
+                        spill(data, split, partition.level + 1);
+                        data = new HashMap<>();
+                        buffered = 0;
+                    }
+                }
+                pending.removeFirst().file.close();
+                if (split == null) {
+                    current = data.entrySet().iterator();
+                    continue;
+                }
+                spill(data, split, partition.level + 1);
+                int added = enqueue(split, partition.level + 1, true);
+                if (added == 1) {
+                    Partition<R> single = pending.removeFirst();
+                    pending.addFirst(new Partition<>(single.file, single.level, false));
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+
+    /**
+     * Groups the elements by their key into lists, the elements themselves are spilled and their
+     * key is extracted again when they are read back.
+     */
+    static final class Grouping<T, K> extends SpillingAggregation<T, K, List<T>, T> {
+        private final Function<? super T, ? extends K> keyExtractor;
+        private final ElementCodec<T> codec;
+
+        Grouping(Function<? super T, ? extends K> keyExtractor, int maxInMemory, ElementCodec<T> codec) {
+            super(maxInMemory);
+            this.keyExtractor = keyExtractor;
+            this.codec = codec;
+        }
+
+        @Override
+        ElementCodec<T> codec() {
+            return codec;
+        }
+
+        @Override
+        long accumulate(Map<K, List<T>> data, T input) {
+            data.computeIfAbsent(keyExtractor.apply(input), k -> new ArrayList<>()).add(input);
+            return 1;
+        }
+
+        @Override
+        void spill(K key, List<T> value, Consumer<T> partition) {
+            value.forEach(partition);
+        }
+
+        @Override
+        long restore(Map<K, List<T>> data, T record) {
+            return accumulate(data, record);
+        }
+
+        @Override
+        public String toString() {
+            return "groupBy";
+        }
+    }
+
+    /**
+     * Counts the elements by their key, the partial counts are spilled together with their key.
+     */
+    static final class Counting<T, K> extends SpillingAggregation<T, K, Long, Map.Entry<K, Long>> {
+        private final Function<? super T, ? extends K> keyExtractor;
+        private final ElementCodec<Map.Entry<K, Long>> codec;
+
+        Counting(Function<? super T, ? extends K> keyExtractor, int maxInMemory, ElementCodec<K> keyCodec) {
+            super(maxInMemory);
+            this.keyExtractor = keyExtractor;
+            this.codec = new ElementCodec<>() {
+                @Override
+                public void write(Map.Entry<K, Long> element, DataOutput output) throws IOException {
+                    keyCodec.write(element.getKey(), output);
+                    output.writeLong(element.getValue());
+                }
+
+                @Override
+                public Map.Entry<K, Long> read(DataInput input) throws IOException {
+                    K key = keyCodec.read(input);
+                    return new AbstractMap.SimpleImmutableEntry<>(key, input.readLong());
+                }
+            };
+        }
+
+        @Override
+        ElementCodec<Map.Entry<K, Long>> codec() {
+            return codec;
+        }
+
+        @Override
+        long accumulate(Map<K, Long> data, T input) {
+            int size = data.size();
+            data.merge(keyExtractor.apply(input), 1L, Long::sum);
+            return data.size() - size;
+        }
+
+        @Override
+        void spill(K key, Long value, Consumer<Map.Entry<K, Long>> partition) {
+            partition.accept(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        }
+
+        @Override
+        long restore(Map<K, Long> data, Map.Entry<K, Long> record) {
+            int size = data.size();
+            data.merge(record.getKey(), record.getValue(), Long::sum);
+            return data.size() - size;
+        }
+
+        @Override
+        public String toString() {
+            return "countsBy";
+        }
+    }
+}
@@ -63,6 +63,11 @@ public interface TryedStream<T, E extends Throwable> extends Streamable<Try<T, E
             @Override
             public void finish(Consumer<Try<T, E>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 
@@ -77,6 +82,11 @@ public interface TryedStream<T, E extends Throwable> extends Streamable<Try<T, E
             @Override
             public void finish(Consumer<U> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(Streamable.type());
     }
 
@@ -96,6 +106,11 @@ public interface TryedStream<T, E extends Throwable> extends Streamable<Try<T, E
             @Override
             public void finish(Consumer<Try<T, E>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 
@@ -118,6 +133,11 @@ public interface TryedStream<T, E extends Throwable> extends Streamable<Try<T, E
             @Override
             public void finish(Consumer<Try<R, E>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         });
     }
 }
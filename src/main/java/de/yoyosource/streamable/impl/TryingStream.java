@@ -28,6 +28,11 @@ public interface TryingStream<T> extends Streamable<T> {
             @Override
             public void finish(Consumer<Try<R, E>> next) {
             }
+
+            @Override
+            public int flags() {
+                return STATELESS;
+            }
         }).as(TryedStream.type());
     }
 }
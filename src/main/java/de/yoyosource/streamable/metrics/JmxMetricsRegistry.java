@@ -0,0 +1,49 @@
+package de.yoyosource.streamable.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers pipelines as {@code de.yoyosource.streamable:type=Pipeline,name=<name>} and their stages
+ * as {@code de.yoyosource.streamable:type=Stage,pipeline=<name>,stage=<index>-<operator>} in the
+ * platform MBean server.
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+
+    private static final String DOMAIN = "de.yoyosource.streamable";
+
+    private final MBeanServer server;
+
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void register(PipelineMetrics pipeline) {
+        register(pipeline, DOMAIN + ":type=Pipeline,name=" + ObjectName.quote(pipeline.getName()));
+    }
+
+    @Override
+    public void register(PipelineMetrics pipeline, StageMetrics stage) {
+        register(stage, DOMAIN + ":type=Stage,pipeline=" + ObjectName.quote(pipeline.getName())
+                + ",stage=" + ObjectName.quote(stage.getIndex() + "-" + stage.getOperator()));
+    }
+
+    private void register(Object bean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + name, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package de.yoyosource.streamable.metrics;
+
+/**
+ * Publishes the metrics of instrumented pipelines, see {@link StreamableMetrics#setRegistry(MetricsRegistry)}.
+ * Every pipeline and stage is registered once, when it is first evaluated.
+ */
+public interface MetricsRegistry {
+
+    void register(PipelineMetrics pipeline);
+
+    void register(PipelineMetrics pipeline, StageMetrics stage);
+}
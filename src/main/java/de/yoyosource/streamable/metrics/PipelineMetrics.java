@@ -0,0 +1,61 @@
+package de.yoyosource.streamable.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of all pipelines evaluated under the same name. Stages are identified by their index and
+ * operator, so pipelines of different shapes sharing a name get separate stages.
+ */
+public final class PipelineMetrics implements PipelineMetricsMBean {
+
+    private final String name;
+    private final MetricsRegistry registry;
+    private final LongAdder evaluations = new LongAdder();
+    private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+
+    PipelineMetrics(String name, MetricsRegistry registry) {
+        this.name = name;
+        this.registry = registry;
+    }
+
+    public void recordEvaluation() {
+        evaluations.increment();
+    }
+
+    public StageMetrics stage(int index, String operator) {
+        String key = index + ":" + operator;
+        StageMetrics stage = stages.get(key);
+        if (stage != null) return stage;
+
+        StageMetrics created = new StageMetrics(name, index, operator);
+        stage = stages.putIfAbsent(key, created);
+        if (stage != null) return stage;
+        registry.register(this, created);
+        return created;
+    }
+
+    public List<StageMetrics> getStages() {
+        List<StageMetrics> result = new ArrayList<>(stages.values());
+        result.sort((first, second) -> Integer.compare(first.getIndex(), second.getIndex()));
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public int getStageCount() {
+        return stages.size();
+    }
+}
@@ -0,0 +1,9 @@
+package de.yoyosource.streamable.metrics;
+
+public interface PipelineMetricsMBean {
+    String getName();
+
+    long getEvaluations();
+
+    int getStageCount();
+}
@@ -0,0 +1,96 @@
+package de.yoyosource.streamable.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one stage of a named pipeline, aggregated over all of its evaluations. The collector
+ * of a pipeline is recorded as the last stage.
+ */
+public final class StageMetrics implements StageMetricsMBean {
+
+    private final String pipeline;
+    private final int index;
+    private final String operator;
+
+    private final LongAdder elementsIn = new LongAdder();
+    private final LongAdder elementsOut = new LongAdder();
+    private final LongAdder timeNanos = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final AtomicLong maxBuffered = new AtomicLong();
+
+    StageMetrics(String pipeline, int index, String operator) {
+        this.pipeline = pipeline;
+        this.index = index;
+        this.operator = operator;
+    }
+
+    public void recordIn(long count) {
+        elementsIn.add(count);
+    }
+
+    public void recordOut(long count) {
+        elementsOut.add(count);
+    }
+
+    public void recordTime(long nanos) {
+        timeNanos.add(nanos);
+    }
+
+    public void recordShortCircuit() {
+        shortCircuits.increment();
+    }
+
+    public void recordBuffered(long buffered) {
+        // Only contended when a new maximum is reached
+        if (buffered > maxBuffered.get()) {
+            maxBuffered.accumulateAndGet(buffered, Math::max);
+        }
+    }
+
+    @Override
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String getOperator() {
+        return operator;
+    }
+
+    @Override
+    public long getElementsIn() {
+        return elementsIn.sum();
+    }
+
+    @Override
+    public long getElementsOut() {
+        return elementsOut.sum();
+    }
+
+    @Override
+    public long getTimeNanos() {
+        return timeNanos.sum();
+    }
+
+    @Override
+    public long getShortCircuits() {
+        return shortCircuits.sum();
+    }
+
+    @Override
+    public long getMaxBuffered() {
+        return maxBuffered.get();
+    }
+
+    @Override
+    public String toString() {
+        return pipeline + "[" + index + ":" + operator + "] in=" + getElementsIn() + " out=" + getElementsOut()
+                + " time=" + getTimeNanos() + "ns shortCircuits=" + getShortCircuits() + " maxBuffered=" + getMaxBuffered();
+    }
+}
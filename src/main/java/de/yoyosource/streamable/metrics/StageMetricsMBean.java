@@ -0,0 +1,25 @@
+package de.yoyosource.streamable.metrics;
+
+public interface StageMetricsMBean {
+    String getPipeline();
+
+    int getIndex();
+
+    String getOperator();
+
+    long getElementsIn();
+
+    long getElementsOut();
+
+    /**
+     * @return the time spent in the stage itself, excluding the time spent in its downstream stages
+     */
+    long getTimeNanos();
+
+    long getShortCircuits();
+
+    /**
+     * @return the highest number of elements the stage held at once, or pending iterators of a flatGather
+     */
+    long getMaxBuffered();
+}
@@ -0,0 +1,39 @@
+package de.yoyosource.streamable.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Entry point of the per stage metrics. A pipeline is only instrumented if a name was given with
+ * {@link de.yoyosource.streamable.Streamable#instrument(String)}, all other pipelines run without
+ * any instrumentation.
+ */
+public final class StreamableMetrics {
+
+    private StreamableMetrics() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static volatile MetricsRegistry registry = new JmxMetricsRegistry();
+    private static final Map<String, PipelineMetrics> PIPELINES = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the registry new pipelines and stages are published to. Metrics that already exist
+     * stay with the previous registry.
+     */
+    public static void setRegistry(MetricsRegistry registry) {
+        StreamableMetrics.registry = registry;
+    }
+
+    public static PipelineMetrics pipeline(String name) {
+        PipelineMetrics pipeline = PIPELINES.get(name);
+        if (pipeline != null) return pipeline;
+
+        MetricsRegistry current = registry;
+        PipelineMetrics created = new PipelineMetrics(name, current);
+        pipeline = PIPELINES.putIfAbsent(name, created);
+        if (pipeline != null) return pipeline;
+        current.register(created);
+        return created;
+    }
+}